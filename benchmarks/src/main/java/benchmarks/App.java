@@ -0,0 +1,107 @@
+// Written by İ.K. Bilir (Abes400)
+
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import java.io.File;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import java.nio.file.Path;
+
+/**
+ * The way into the app from the benchmarks. The classes of the app live in the default package, which cannot be
+ * imported from a named package, and JMH needs the benchmarks to be in a named one. So the methods being measured
+ * are looked up once by name and called through method handles, which cost next to nothing once they are warmed up.
+ *
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+final class App {
+
+    private static final MethodHandle SAVE_TO_FILE, READ_FILE, READ_BITMAP, WRITE_BITMAP, NEW_DOCUMENT;
+    private static final MethodHandle SET_ROW_COUNT, SET_COL_COUNT, GET_ROW_COUNT, GET_COL_COUNT, GET_IMAGE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> codec = Class.forName("SLICCodec"), main = Class.forName("Main");
+
+            SAVE_TO_FILE = lookup.unreflect(method(codec, "saveToFile", BufferedImage.class, Path.class));
+            READ_FILE = lookup.unreflect(method(codec, "readFile", Path.class, BufferedImage.class));
+            READ_BITMAP = lookup.unreflect(method(main, "readBitmap", File.class));
+            WRITE_BITMAP = lookup.unreflect(method(main, "writeBitmap", File.class));
+            NEW_DOCUMENT = lookup.unreflect(method(main, "newDocument", int.class, int.class));
+
+            SET_ROW_COUNT = lookup.unreflectSetter(field(codec, "rowCount"));
+            SET_COL_COUNT = lookup.unreflectSetter(field(codec, "colCount"));
+            GET_ROW_COUNT = lookup.unreflectGetter(field(codec, "rowCount"));
+            GET_COL_COUNT = lookup.unreflectGetter(field(codec, "colCount"));
+            GET_IMAGE = lookup.unreflectGetter(field(main, "image"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() {}
+
+    // SLICCodec.saveToFile(image, path)
+    static void saveToFile(BufferedImage image, Path compressedFile) throws Throwable {
+        SAVE_TO_FILE.invokeExact(image, compressedFile);
+    }
+
+    // SLICCodec.readFile(path, image)
+    static void readFile(Path compressedFile, BufferedImage image) throws Throwable {
+        READ_FILE.invokeExact(compressedFile, image);
+    }
+
+    // Main.readBitmap(file), reads the bitmap into Main.image
+    static void readBitmap(File source) throws Throwable {
+        READ_BITMAP.invokeExact(source);
+    }
+
+    // Main.writeBitmap(file), writes the document part of Main.image
+    static void writeBitmap(File destination) throws Throwable {
+        WRITE_BITMAP.invokeExact(destination);
+    }
+
+    // Main.newDocument(width, height), makes Main.image a clear image of the right size for the document
+    static void newDocument(int width, int height) throws Throwable {
+        NEW_DOCUMENT.invokeExact(width, height);
+    }
+
+    // Sets SLICCodec.rowCount and SLICCodec.colCount, the size of the document the app is working on.
+    static void setDocumentSize(int width, int height) throws Throwable {
+        SET_ROW_COUNT.invokeExact(height);
+        SET_COL_COUNT.invokeExact(width);
+    }
+
+    static int documentWidth() throws Throwable {
+        return (int) GET_COL_COUNT.invokeExact();
+    }
+
+    static int documentHeight() throws Throwable {
+        return (int) GET_ROW_COUNT.invokeExact();
+    }
+
+    // Main.image, the image the app shows its documents in, a little bigger than the document
+    static BufferedImage image() throws Throwable {
+        return (BufferedImage) GET_IMAGE.invokeExact();
+    }
+
+    private static Method method(Class<?> owner, String name, Class<?>... parameters) throws NoSuchMethodException {
+        Method method = owner.getDeclaredMethod(name, parameters);
+        method.setAccessible(true);
+        return method;
+    }
+
+    private static Field field(Class<?> owner, String name) throws NoSuchFieldException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
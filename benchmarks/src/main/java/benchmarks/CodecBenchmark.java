@@ -0,0 +1,135 @@
+// Written by İ.K. Bilir (Abes400)
+
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the four ways an image goes in and out of the app: compressing into a <strong>.slc</strong> file,
+ * decompressing one, and opening and saving a <strong>.bmp</strong> file. Every benchmark goes through the same
+ * methods the app does, on <strong>Main.image</strong>.
+ *
+ * <p>
+ *  The compression ratio of every image, the size of its bitmap divided by the size of its SLIC file, shows up as
+ *  the <strong>compressionRatio</strong> counter of the <strong>encode</strong> benchmark.
+ * </p>
+ * <p>
+ *  The app keeps the size of its document in static fields, so these benchmarks cannot run on several threads.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-Djava.awt.headless=true" })
+@Threads(1)
+public class CodecBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Document {
+
+        @Param({ "FLAT", "GRADIENT", "NOISE", "SCREENSHOT", "TEXT", "LINE_ART" })
+        public Corpus.Kind kind;
+
+        // Square images, from an icon up to a big photo.
+        @Param({ "256", "1024", "5000" })
+        public int size;
+
+        Path directory, compressedFile, bitmapFile, encodedFile, exportedFile;
+
+        @Setup(Level.Trial)
+        public void generate() throws Throwable {
+            // The document is put in place the same way the app does, in the top left corner of Main.image.
+            App.newDocument(size, size);
+            BufferedImage image = App.image();
+            Graphics2D g = image.createGraphics();
+            g.drawImage(kind.generate(size, size), 0, 0, null);
+            g.dispose();
+
+            directory = Files.createTempDirectory("slic-bench");
+            compressedFile = directory.resolve("document.slc");
+            bitmapFile = directory.resolve("document.bmp");
+            encodedFile = directory.resolve("encoded.slc");
+            exportedFile = directory.resolve("exported.bmp");
+
+            App.saveToFile(image, compressedFile);
+            App.writeBitmap(bitmapFile.toFile());
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            for(Path file : new Path[] { compressedFile, bitmapFile, encodedFile, exportedFile })
+                Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Ratio {
+
+        // JMH zeroes counter fields before every iteration, a method keeps the value measured at setup.
+        private double ratio;
+
+        @Setup(Level.Iteration)
+        public void measure(Document document) throws IOException {
+            ratio = (double) Files.size(document.bitmapFile) / Files.size(document.compressedFile);
+        }
+
+        public double compressionRatio() {
+            return ratio;
+        }
+    }
+
+    @Benchmark
+    public Path encode(Document document, Ratio ratio) throws Throwable {
+        App.saveToFile(App.image(), document.encodedFile);
+        return document.encodedFile;
+    }
+
+    @Benchmark
+    public BufferedImage decode(Document document) throws Throwable {
+        BufferedImage image = App.image();
+        App.readFile(document.compressedFile, image);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage bitmapImport(Document document) throws Throwable {
+        App.readBitmap(document.bitmapFile.toFile());
+        return App.image();
+    }
+
+    @Benchmark
+    public File bitmapExport(Document document) throws Throwable {
+        File destination = document.exportedFile.toFile();
+        App.writeBitmap(destination);
+        return destination;
+    }
+}
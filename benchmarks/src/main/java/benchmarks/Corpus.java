@@ -0,0 +1,159 @@
+// Written by İ.K. Bilir (Abes400)
+
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import java.util.Random;
+
+/**
+ * The images the benchmarks are run on. Every kind stands for a sort of image SLIC is used for, from the best case
+ * (a single flat color) to the worst one (noise, where every tile is a dot).
+ *
+ * <p>
+ *  Images are generated, not read from files, and the same kind and size always gives the very same pixels. Text is
+ *  drawn with made up glyphs instead of a font, so the corpus does not depend on the fonts of the machine either.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code BufferedImage image = Corpus.Kind.TEXT.generate(1024, 1024);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public final class Corpus {
+
+    public enum Kind {
+        FLAT, GRADIENT, NOISE, SCREENSHOT, TEXT, LINE_ART;
+
+        /**
+         * Generates an image of this kind.
+         * @param width Width of the image
+         * @param height Height of the image
+         * @return A <strong>TYPE_INT_ARGB</strong> image of exactly the given size
+         */
+        BufferedImage generate(int width, int height) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Random random = new Random(31L * ordinal() + 7L * width + height);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+
+            switch(this) {
+                case FLAT:
+                    g.setColor(new Color(0x3A6EA5));
+                    g.fillRect(0, 0, width, height);
+                    break;
+                case GRADIENT:
+                    for(int r = 0; r < height; r++)
+                        for(int c = 0; c < width; c++)
+                            image.setRGB(c, r, 0xFF000000 | (c * 255 / width) << 16 | (r * 255 / height) << 8 | 0x80);
+                    break;
+                case NOISE:
+                    for(int r = 0; r < height; r++)
+                        for(int c = 0; c < width; c++)
+                            image.setRGB(c, r, 0xFF000000 | random.nextInt());
+                    break;
+                case SCREENSHOT:
+                    screenshot(g, random, width, height);
+                    break;
+                case TEXT:
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, width, height);
+                    text(g, random, 16, 16, width - 16, height - 16, Color.BLACK);
+                    break;
+                case LINE_ART:
+                    lineArt(g, random, width, height);
+                    break;
+            }
+
+            g.dispose();
+            return image;
+        }
+    }
+
+    private Corpus() {}
+
+    // A desktop with overlapping windows, each with a title bar, a few buttons and some text in it.
+    private static void screenshot(Graphics2D g, Random random, int width, int height) {
+        g.setColor(new Color(0x2D4F6C));
+        g.fillRect(0, 0, width, height);
+
+        // The menu bar
+        g.setColor(new Color(0xECECEC));
+        g.fillRect(0, 0, width, 24);
+        text(g, random, 8, 8, Math.min(width, 400), 20, Color.DARK_GRAY);
+
+        int windows = Math.max(1, width * height / 250_000);
+        for(int i = 0; i < windows; i++) {
+            int w = Math.max(64, width / 3 + random.nextInt(width / 3 + 1));
+            int h = Math.max(64, height / 3 + random.nextInt(height / 3 + 1));
+            int x = random.nextInt(Math.max(1, width - w / 2)), y = 24 + random.nextInt(Math.max(1, height - h / 2));
+
+            g.setColor(new Color(0x7F7F7F));
+            g.drawRect(x - 1, y - 1, w + 1, h + 1);
+            g.setColor(Color.WHITE);
+            g.fillRect(x, y, w, h);
+            g.setColor(new Color(0xDDDDDD));
+            g.fillRect(x, y, w, 22);
+
+            // The close, minimize and zoom buttons
+            Color[] buttons = { new Color(0xFF5F57), new Color(0xFEBC2E), new Color(0x28C840) };
+            for(int b = 0; b < buttons.length; b++) {
+                g.setColor(buttons[b]);
+                g.fillOval(x + 8 + b * 18, y + 5, 12, 12);
+            }
+
+            // A toolbar of buttons and the content
+            for(int b = 0; b < w / 60; b++) {
+                g.setColor(new Color(0xF4F4F4));
+                g.fillRect(x + 8 + b * 60, y + 30, 52, 20);
+                g.setColor(new Color(0xB0B0B0));
+                g.drawRect(x + 8 + b * 60, y + 30, 52, 20);
+            }
+            text(g, random, x + 8, y + 60, x + w - 8, y + h - 8, Color.BLACK);
+        }
+    }
+
+    // Fills the area with lines of made up 5x7 glyphs, 6 pixels apart, with the odd gap between words.
+    private static void text(Graphics2D g, Random random, int left, int top, int right, int bottom, Color color) {
+        g.setColor(color);
+
+        for(int y = top; y + 7 <= bottom; y += 12) {
+            int lineEnd = left + random.nextInt(Math.max(1, right - left));
+
+            for(int x = left; x + 5 <= lineEnd; x += 6) {
+                if(random.nextInt(6) == 0) continue; // a space
+
+                int glyph = random.nextInt(); // 35 bits would be needed, the last column repeats the first
+                for(int r = 0; r < 7; r++)
+                    for(int c = 0; c < 5; c++)
+                        if((glyph >>> ((r * 5 + c) % 32) & 1) != 0) g.fillRect(x + c, y + r, 1, 1);
+            }
+        }
+    }
+
+    // Lines and circles of a few colors on a white page, like a diagram or a sketch.
+    private static void lineArt(Graphics2D g, Random random, int width, int height) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+
+        Color[] inks = { Color.BLACK, new Color(0x1F4E9E), new Color(0xB22222), new Color(0x2E7D32) };
+        int strokes = Math.max(8, width * height / 5_000);
+
+        for(int i = 0; i < strokes; i++) {
+            g.setColor(inks[random.nextInt(inks.length)]);
+            int x = random.nextInt(width), y = random.nextInt(height);
+
+            switch(random.nextInt(4)) {
+                case 0: g.drawLine(x, y, x + random.nextInt(200) - 100, y); break; // horizontal
+                case 1: g.drawLine(x, y, x, y + random.nextInt(200) - 100); break; // vertical
+                case 2: g.drawLine(x, y, x + random.nextInt(200) - 100, y + random.nextInt(200) - 100); break;
+                default: int d = 4 + random.nextInt(60); g.drawOval(x, y, d, d);
+            }
+        }
+    }
+}
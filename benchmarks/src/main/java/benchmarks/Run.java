@@ -0,0 +1,38 @@
+// Written by İ.K. Bilir (Abes400)
+
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the regular JMH launcher does, with the gc profiler always on, so every result comes with
+ * the allocation rate next to the throughput.
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code java -jar benchmarks/target/benchmarks.jar CodecBenchmark.decode -p kind=TEXT}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class Run {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,105 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+
+/**
+ * A growable in-memory buffer holding the compressed tiles of one band, until the band can be written to the file.
+ * Bands are compressed in parallel but have to end up in the file in order, so every band gets its own buffer.
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class BandBuffer implements TileOutput {
+
+    private byte[] bytes;
+    private int size;
+
+    /**
+     * Creates an empty buffer.
+     * @param capacity How many bytes it can hold before it has to grow
+     */
+    public BandBuffer(int capacity) {
+        bytes = new byte[Math.max(capacity, 16)];
+    }
+
+    @Override
+    public void putInt(int word) {
+        ensureCapacity(4);
+        bytes[size] = (byte) (word >> 24);
+        bytes[size + 1] = (byte) (word >> 16);
+        bytes[size + 2] = (byte) (word >> 8);
+        bytes[size + 3] = (byte) word;
+        size += 4;
+    }
+
+    @Override
+    public void putByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    // The bytes go straight into the array, and it cannot fail.
+    @Override
+    public void putVarint(int value) {
+        ensureCapacity(SLICCodec.MAX_VARINT_SIZE);
+        size += SLICCodec.writeVarint(value, bytes, size);
+    }
+
+    /**
+     * Reads back a 32-bit big-endian word that has been written into the buffer.
+     * @param position Offset of the first byte of the word
+     * @return The word
+     */
+    public int getInt(int position) {
+        return (bytes[position] & 0xFF) << 24 | (bytes[position + 1] & 0xFF) << 16
+             | (bytes[position + 2] & 0xFF) << 8 | (bytes[position + 3] & 0xFF);
+    }
+
+    /**
+     * Reads back a varint that has been written into the buffer.
+     * @param position Offset of the first byte of the varint
+     * @return The number
+     */
+    public int getVarint(int position) {
+        int value = 0;
+        for(int shift = 0; ; shift += 7) {
+            int part = bytes[position++];
+            value |= (part & 0x7F) << shift;
+            if(part >= 0) return value;
+        }
+    }
+
+    /**
+     * @param value A non-negative number
+     * @return How many bytes its varint takes
+     */
+    public static int varintSize(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    /** @return How many bytes have been written into the buffer */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long position() {
+        return size;
+    }
+
+    /**
+     * Writes the content of the buffer to the file.
+     * @param writer The writer of the file
+     * @throws IOException If the file cannot be written
+     */
+    public void writeTo(SLICFileWriter writer) throws IOException {
+        writer.write(ByteBuffer.wrap(bytes, 0, size));
+    }
+
+    private void ensureCapacity(int extra) {
+        if(size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+    }
+}
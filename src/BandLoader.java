@@ -0,0 +1,165 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Paints the bands of a version 2 SLIC file onto the image of a document ahead of its decompression, as soon as the
+ * canvas asks for them. A file opened in the viewer is decompressed from the top, a band the user scrolls to far
+ * down the image would only show up near the end. The loader decompresses just the bands asked for through
+ * <strong>decodeRegion()</strong>, which finds them through the band table of the file.
+ *
+ * <p>
+ *  The decompression of the whole file goes on in the meantime, and tells the loader about the rows it finishes, so
+ *  that a band is never asked for once it is done. Both paint the very same pixels, a band painted by both of them
+ *  ends up just the same.
+ * </p>
+ * <p>
+ *  The bands are painted on threads of their own, at most <strong>MAX_LOADS</strong> of them at once.
+ *  <strong>close()</strong> waits for the ones being painted, after that the loader never touches the image again.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code BandLoader loader = new BandLoader(path, image, width, height, bandHeight, canvas::rowsChanged);
+ *     canvas.setRowLoader(loader);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class BandLoader implements ImageCanvas.RowLoader, AutoCloseable {
+
+    /** The most bands painted at once. */
+    public static final int MAX_LOADS = 2;
+
+    // What a band is up to.
+    private static final int WAITING = 0, LOADING = 1, LOADED = 2;
+
+    // The threads the bands are painted on. They are daemons so that they never keep the app alive.
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_LOADS, runnable -> {
+        Thread thread = new Thread(runnable, "SLIC band loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path path;
+    private final BufferedImage image;
+    private final int width, height, bandHeight;
+    private final DecodeListener listener;
+    private final AtomicIntegerArray bands;
+
+    // The bands asked for, so that close() can wait for them.
+    private final List<Future<?>> loads = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * @param path The path of the .slc file
+     * @param image The image the file is being decompressed onto
+     * @param width Width of the image of the file
+     * @param height Height of the image of the file
+     * @param bandHeight Rows per band of the file
+     * @param listener Told about the rows of every band painted by the loader, on the thread that painted it
+     */
+    public BandLoader(Path path, BufferedImage image, int width, int height, int bandHeight, DecodeListener listener) {
+        this.path = path;
+        this.image = image;
+        this.width = width;
+        this.height = height;
+        this.bandHeight = bandHeight;
+        this.listener = listener;
+        this.bands = new AtomicIntegerArray(SLICCodec.bandCount(height, bandHeight));
+    }
+
+    /**
+     * Takes note of rows painted by the decompression of the whole file. Call it from the
+     * <strong>DecodeListener</strong> of the decompression.
+     * @param top The first finished row
+     * @param bottom The row after the last finished row
+     */
+    public void rowsDecoded(int top, int bottom) {
+        // The rows of a band are reported from its top down, the band is done once its last row is. A band the
+        // decompression has started on is not asked for, it is on its way already.
+        int band = (bottom - 1) / bandHeight;
+        if(bottom == bandBottom(band)) bands.set(band, LOADED);
+        else bands.compareAndSet(band, WAITING, LOADING);
+    }
+
+    @Override
+    public boolean isLoaded(int top, int bottom) {
+        for(int band = top / bandHeight; band <= (Math.min(bottom, height) - 1) / bandHeight; band++)
+            if(bands.get(band) != LOADED) return false;
+        return true;
+    }
+
+    @Override
+    public synchronized void load(int top, int bottom) {
+        if(closed) return;
+
+        for(int band = top / bandHeight; band <= (Math.min(bottom, height) - 1) / bandHeight; band++) {
+            if(!bands.compareAndSet(band, WAITING, LOADING)) continue;
+
+            final int index = band;
+            loads.add(executor.submit(() -> {
+                paint(index);
+                return null;
+            }));
+        }
+    }
+
+    // Decompresses the band and copies its rows onto the image, unless the decompression of the whole file has
+    // finished it in the meantime.
+    private void paint(int band) throws IOException {
+        if(bands.get(band) == LOADED) return;
+
+        int top = band * bandHeight, bottom = bandBottom(band);
+        BufferedImage rows = new SLICDecoder().decodeRegion(path, 0, top, width, bottom - top);
+
+        ImagePixels source = ImagePixels.of(rows, width, bottom - top), target = ImagePixels.of(image, width, height);
+        for(int row = top; row < bottom; row++)
+            System.arraycopy(source.data, source.index(row - top, 0), target.data, target.index(row, 0), width);
+        target.commit();
+
+        bands.set(band, LOADED);
+        listener.rowsDecoded(top, bottom);
+    }
+
+    private int bandBottom(int band) {
+        return (int) Math.min(height, (long) (band + 1) * bandHeight);
+    }
+
+    /**
+     * Stops painting bands. The bands not started yet are dropped, the ones being painted are waited for. A band
+     * that could not be painted is left to the decompression of the whole file.
+     */
+    @Override
+    public void close() {
+        List<Future<?>> pending;
+        synchronized(this) {
+            closed = true;
+            pending = new ArrayList<>(loads);
+        }
+
+        for(Future<?> load : pending) load.cancel(false);
+        for(Future<?> load : pending) {
+            try {
+                load.get();
+            } catch (CancellationException | ExecutionException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Converts whole directory trees from the command line, without opening a single window, so it also works on
+ * machines that have no display. Every <strong>.bmp</strong> file found is compressed into a <strong>.slc</strong>
+ * file and every <strong>.slc</strong> file is decompressed into a <strong>.bmp</strong> file, at the same relative
+ * path under the target directory.
+ *
+ * <p>
+ *  Files are converted in parallel, on as many workers as there are cores. Every worker keeps its own encoder and
+ *  decoder, and the working buffers of the codec are pooled, so they are reused from one file to the next.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code java -cp "SLIC Viewer.jar" BatchTranscoder --threads 4 --version 1 photos/ converted/}
+ * </pre>
+ * Running the app with arguments does the same, {@code java -jar "SLIC Viewer.jar" photos/ converted/}
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class BatchTranscoder {
+
+    private static final String USAGE =
+            "Usage: BatchTranscoder [--threads N] [--version 1|2] [--effort fast|balanced|thorough] [--entropy]\n" +
+            "                       [--overwrite] <source> <target>\n" +
+            "  Compresses every .bmp file and decompresses every .slc file under <source>,\n" +
+            "  writing the results to the same relative paths under <target>.\n" +
+            "  --threads N      Number of files converted at once, the number of cores by default\n" +
+            "  --version 1|2    SLIC version of the files written, 2 by default\n" +
+            "  --effort LEVEL   How hard the encoder tries to make small files, balanced by default\n" +
+            "  --entropy        Entropy code the tiles of version 2 files, for the smallest files\n" +
+            "  --overwrite      Replace files that already exist under <target>";
+
+    private final Path source, target;
+    private final int threads;
+    private final boolean overwrite;
+
+    // Every worker has its own codecs, they must not be shared between threads.
+    private final ThreadLocal<SLICEncoder> encoders;
+    private final ThreadLocal<SLICDecoder> decoders = ThreadLocal.withInitial(SLICDecoder::new);
+
+    private final AtomicInteger converted = new AtomicInteger(), skipped = new AtomicInteger(), failed = new AtomicInteger();
+    private final AtomicLong bitmapBytes = new AtomicLong(), slicBytes = new AtomicLong();
+
+    /**
+     * Creates a transcoder for the given trees.
+     * @param source The directory whose files are converted, or a single file
+     * @param target The directory the converted files are written to, it is created if it does not exist
+     * @param threads Number of files converted at once, at least 1
+     * @param version SLIC version of the files written
+     * @param effort Effort level of the encoder, <strong>SLICEncoder.FAST</strong> for instance
+     * @param entropyCoding Whether the tiles of version 2 files are entropy coded
+     * @param overwrite Whether files already existing under the target are replaced, or left alone
+     */
+    public BatchTranscoder(Path source, Path target, int threads, int version, int effort, boolean entropyCoding,
+                           boolean overwrite) {
+        if(threads < 1) throw new IllegalArgumentException("At least one thread is needed.");
+
+        this.source = source;
+        this.target = target;
+        this.threads = threads;
+        this.overwrite = overwrite;
+
+        encoders = ThreadLocal.withInitial(() -> {
+            SLICEncoder encoder = new SLICEncoder();
+            encoder.setVersion(version);
+            encoder.setEffort(effort);
+            encoder.setEntropyCoding(entropyCoding);
+            return encoder;
+        });
+    }
+
+    /**
+     * The command line entry point. The exit code is 0 if every file is converted, 1 if some files cannot be
+     * converted, and 2 if the arguments are wrong.
+     * @param args The options, then the source and the target
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors(), version = SLICCodec.VERSION_2;
+        int effort = SLICEncoder.BALANCED;
+        boolean entropyCoding = false, overwrite = false;
+        List<String> paths = new ArrayList<>();
+
+        try {
+            for(int i = 0; i < args.length; i++) {
+                switch(args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--version": version = Integer.parseInt(args[++i]); break;
+                    case "--effort": effort = effort(args[++i]); break;
+                    case "--entropy": entropyCoding = true; break;
+                    case "--overwrite": overwrite = true; break;
+                    case "--help": System.out.println(USAGE); return;
+                    default: paths.add(args[i]);
+                }
+            }
+
+            if(paths.size() != 2 || threads < 1 || (version != SLICCodec.VERSION_1 && version != SLICCodec.VERSION_2)
+               || (entropyCoding && version != SLICCodec.VERSION_2))
+                throw new IllegalArgumentException();
+
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            BatchTranscoder transcoder = new BatchTranscoder(Paths.get(paths.get(0)), Paths.get(paths.get(1)),
+                                                             threads, version, effort, entropyCoding, overwrite);
+            System.exit(transcoder.run() ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts every file of the source tree, telling about every file on the standard output as soon as it is done,
+     * and about the whole batch at the end.
+     * @return true if every file is converted or skipped, false if some of them cannot be converted
+     * @throws IOException If the source tree cannot be walked
+     */
+    public boolean run() throws IOException {
+        List<Path> files;
+        try(Stream<Path> tree = Files.walk(source)) {
+            files = tree.filter(Files::isRegularFile).filter(file -> extension(file) != null).collect(Collectors.toList());
+        }
+
+        // The queue is kept short, so files are not waiting long after they are handed out.
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        long start = System.nanoTime();
+        List<Future<?>> conversions = new ArrayList<>(files.size());
+
+        try {
+            for(Path file : files) conversions.add(workers.submit(() -> convert(file)));
+
+            for(Future<?> conversion : conversions) {
+                try {
+                    conversion.get();
+                } catch (ExecutionException e) {
+                    // convert() reports its own failures, nothing else should get here.
+                    failed.incrementAndGet();
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting.", e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println(String.format(Locale.ROOT, "%d converted, %d skipped, %d failed in %d ms, ratio %s",
+                converted.get(), skipped.get(), failed.get(), millis, ratio(bitmapBytes.get(), slicBytes.get())));
+
+        return failed.get() == 0;
+    }
+
+    // Converts a single file and reports how it went. A failing file does not stop the others.
+    private void convert(Path file) {
+        boolean compress = "bmp".equals(extension(file));
+        Path relative = source.equals(file) ? file.getFileName() : source.relativize(file);
+        String name = relative.getFileName().toString();
+        Path destination = target.resolve(relative).resolveSibling(
+                name.substring(0, name.length() - 3) + (compress ? "slc" : "bmp"));
+
+        try {
+            if(!overwrite && Files.exists(destination)) {
+                skipped.incrementAndGet();
+                System.out.println(relative + " skipped, " + destination + " already exists");
+                return;
+            }
+
+            Path parent = destination.getParent();
+            if(parent != null) Files.createDirectories(parent);
+
+            long start = System.nanoTime();
+            int width, height;
+
+            if(compress) {
+                // Uncompressed bitmaps are piped into the encoder a band at a time, any other kind goes through
+                // ImageIO as a whole.
+                try(BitmapReader bitmap = BitmapReader.open(file)) {
+                    if(bitmap != null) {
+                        width = bitmap.getWidth();
+                        height = bitmap.getHeight();
+                        encoders.get().encode(bitmap, width, height, destination);
+                    } else {
+                        BufferedImage image = ImageIO.read(file.toFile());
+                        if(image == null) throw new IOException("Not a readable bitmap.");
+                        width = image.getWidth();
+                        height = image.getHeight();
+                        encoders.get().encode(image, width, height, destination);
+                    }
+                }
+            } else {
+                // The bands go into the bitmap as soon as they are painted, the image is never in memory as a whole.
+                SLICDecoder decoder = decoders.get();
+                decoder.readHeader(file);
+                width = decoder.getWidth();
+                height = decoder.getHeight();
+
+                try(BitmapWriter bitmap = new BitmapWriter(destination, width, height)) {
+                    decoder.decode(file, bitmap);
+                    bitmap.commit();
+                }
+            }
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long bitmapSize = Files.size(compress ? file : destination), slicSize = Files.size(compress ? destination : file);
+
+            converted.incrementAndGet();
+            bitmapBytes.addAndGet(bitmapSize);
+            slicBytes.addAndGet(slicSize);
+
+            System.out.println(String.format(Locale.ROOT, "%s -> %s  %dx%d  %d ms  ratio %s", relative,
+                    destination.getFileName(), width, height, millis, ratio(bitmapSize, slicSize)));
+
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println(relative + " failed: " + e.getMessage());
+        }
+    }
+
+    private static int effort(String level) {
+        switch(level.toLowerCase(Locale.ROOT)) {
+            case "fast": return SLICEncoder.FAST;
+            case "balanced": return SLICEncoder.BALANCED;
+            case "thorough": return SLICEncoder.THOROUGH;
+            default: throw new IllegalArgumentException("Unknown effort level " + level);
+        }
+    }
+
+    // The extension of the files that are converted, in lower case, or null for any other file.
+    private static String extension(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".bmp") ? "bmp" : name.endsWith(".slc") ? "slc" : null;
+    }
+
+    // How many times smaller the SLIC file is than the bitmap.
+    private static String ratio(long bitmapSize, long slicSize) {
+        return slicSize == 0 ? "-" : String.format(Locale.ROOT, "%.2f", (double) bitmapSize / slicSize);
+    }
+}
@@ -0,0 +1,157 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Reads uncompressed 24 and 32 bit bitmaps a band of rows at a time, straight from the file, so that a bitmap never
+ * has to be in memory as a whole. It can hand the rows over to the SLIC encoder directly, which then compresses a
+ * bitmap of any size with only a few bands of it in memory.
+ *
+ * <p>
+ *  The parts of the file are memory-mapped by a <strong>SLICFileReader</strong>, and the bytes of the rows are put
+ *  together into <strong>0xAARRGGBB</strong> pixels right away. Bitmaps of any other kind, with a color table or
+ *  compressed ones, are left to <strong>ImageIO</strong>, <strong>open()</strong> returns null for them.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code try(BitmapReader bitmap = BitmapReader.open(path)) { if(bitmap != null) encoder.encode(bitmap, bitmap.getWidth(), bitmap.getHeight(), target); }}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class BitmapReader implements RowSource, AutoCloseable {
+
+    // Sizes of the file header and of the smallest info header that tells the compression.
+    static final int FILE_HEADER_SIZE = 14, INFO_HEADER_SIZE = 40;
+
+    // Compression methods of the info header: none, or none with the masks of the channels given.
+    static final int BI_RGB = 0, BI_BITFIELDS = 3;
+
+    // About this many bytes of the file are read at once.
+    private static final int CHUNK_BYTES = 1 << 24;
+
+    private final SLICFileReader reader;
+    private final int width, height, bytesPerPixel, stride;
+    private final long pixelOffset;
+    private final boolean topDown;
+
+    private BitmapReader(SLICFileReader reader, int width, int height, int bytesPerPixel, long pixelOffset,
+                         boolean topDown) {
+        this.reader = reader;
+        this.width = width;
+        this.height = height;
+        this.bytesPerPixel = bytesPerPixel;
+        this.stride = rowSize(width, bytesPerPixel);
+        this.pixelOffset = pixelOffset;
+        this.topDown = topDown;
+    }
+
+    /**
+     * Opens a bitmap for reading.
+     * @param bitmapFile The path of the .bmp file
+     * @return The reader, or null if the bitmap is not an uncompressed 24 or 32 bit one
+     * @throws IOException If the file cannot be read, or is not a bitmap at all
+     */
+    public static BitmapReader open(Path bitmapFile) throws IOException {
+        SLICFileReader reader = new SLICFileReader(bitmapFile);
+
+        try {
+            if(reader.size() < FILE_HEADER_SIZE + INFO_HEADER_SIZE) throw new IOException("Not a bitmap, it is too short.");
+            ByteBuffer header = reader.read(0, Math.min(reader.size(), FILE_HEADER_SIZE + INFO_HEADER_SIZE + 12))
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+            if(header.get(0) != 'B' || header.get(1) != 'M') throw new IOException("Not a bitmap.");
+
+            long pixelOffset = header.getInt(10) & 0xFFFFFFFFL;
+            int infoSize = header.getInt(14), width = header.getInt(18), height = header.getInt(22);
+            int bitCount = header.getShort(28), compression = header.getInt(30);
+
+            // The old OS/2 headers, color tables and compressed pixels are left to ImageIO.
+            boolean masked = compression == BI_BITFIELDS && bitCount == 32 && header.limit() >= 66
+                    && header.getInt(54) == 0xFF0000 && header.getInt(58) == 0xFF00 && header.getInt(62) == 0xFF;
+            if(infoSize < INFO_HEADER_SIZE || (bitCount != 24 && bitCount != 32)
+                    || (compression != BI_RGB && !masked)) {
+                reader.close();
+                return null;
+            }
+
+            if(width < 1 || height == 0 || height == Integer.MIN_VALUE) throw new IOException("Broken bitmap header.");
+
+            BitmapReader bitmap = new BitmapReader(reader, width, Math.abs(height), bitCount / 8, pixelOffset, height < 0);
+            if(pixelOffset + (long) bitmap.stride * bitmap.height > reader.size())
+                throw new IOException("Broken bitmap, its pixels are cut off.");
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /** @return The width of the bitmap */
+    public int getWidth() { return width; }
+
+    /** @return The height of the bitmap */
+    public int getHeight() { return height; }
+
+    /**
+     * Reads the rows [top, bottom) into a view of their own.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @return The rows, reached with their own row numbers
+     * @throws IOException If the rows cannot be read
+     */
+    @Override
+    public ImagePixels rows(int top, int bottom) throws IOException {
+        ImagePixels rows = ImagePixels.ofRows(width, top, bottom);
+        read(top, bottom, rows.data, rows.index(top, 0), rows.stride);
+        return rows;
+    }
+
+    /**
+     * Reads the rows [top, bottom) into an array, as opaque <strong>0xAARRGGBB</strong> pixels.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @param target The array the pixels are read into
+     * @param offset Index of the first pixel of row <strong>top</strong> in the array
+     * @param targetStride Distance between two vertically adjacent pixels in the array
+     * @throws IOException If the rows cannot be read
+     */
+    public void read(int top, int bottom, int[] target, int offset, int targetStride) throws IOException {
+        if(top < 0 || bottom > height || top > bottom)
+            throw new IllegalArgumentException("Cannot read the rows [" + top + ", " + bottom + ")");
+
+        int chunkRows = Math.max(1, CHUNK_BYTES / stride);
+        for(int first = top; first < bottom; first += chunkRows) {
+            int last = Math.min(bottom, first + chunkRows);
+
+            // The rows of the chunk lie next to each other in the file, upside down unless the bitmap is top-down.
+            long from = pixelOffset + (long) stride * (topDown ? first : height - last);
+            ByteBuffer bytes = reader.read(from, from + (long) stride * (last - first));
+
+            for(int row = first; row < last; row++) {
+                int at = stride * (topDown ? row - first : last - 1 - row);
+                int to = offset + (row - top) * targetStride;
+
+                for(int col = 0; col < width; col++, at += bytesPerPixel)
+                    target[to + col] = 0xFF000000 | (bytes.get(at + 2) & 0xFF) << 16
+                                     | (bytes.get(at + 1) & 0xFF) << 8 | (bytes.get(at) & 0xFF);
+            }
+        }
+    }
+
+    // Bytes a row takes in the file, rows are padded to a multiple of 4 bytes.
+    static int rowSize(int width, int bytesPerPixel) {
+        long size = ((long) width * bytesPerPixel + 3) / 4 * 4;
+        if(size > Integer.MAX_VALUE) throw new IllegalArgumentException("A row of " + width + " pixels is too long.");
+        return (int) size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,160 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes uncompressed 24 bit bitmaps a band of rows at a time, so that a bitmap never has to be in memory as a whole.
+ * The SLIC decoder can hand its bands over to it as soon as they are painted, which decompresses a file of any size
+ * into a bitmap with only a few bands of it in memory.
+ *
+ * <p>
+ *  Every band is written straight to its own place in the file, so the bands can come in any order and from several
+ *  threads at once, just like the decoder paints them. The rows are stored bottom-up, the way nearly every program
+ *  writes and expects them.
+ * </p>
+ * <p>
+ *  Like the <strong>SLICFileWriter</strong>, it writes to a temporary file next to the target first. Only
+ *  <strong>commit()</strong> moves it onto the target path, so a failed export never leaves a half-written bitmap
+ *  behind.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code try(BitmapWriter bitmap = new BitmapWriter(path, width, height)) {
+ *         new SLICDecoder().decode(compressedFile, bitmap);
+ *         bitmap.commit();
+ *     }}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class BitmapWriter implements RowSink, AutoCloseable {
+
+    private static final int HEADER_SIZE = BitmapReader.FILE_HEADER_SIZE + BitmapReader.INFO_HEADER_SIZE;
+
+    // About this many bytes are put together before writing them.
+    private static final int CHUNK_BYTES = 1 << 24;
+
+    private final Path target, temp;
+    private final FileChannel channel;
+    private final int width, height, stride;
+    private boolean committed, closed;
+
+    /**
+     * Creates a writer whose bitmap will end up in the given path once <strong>commit()</strong> is called.
+     * @param target The path of the .bmp file to be written
+     * @param width Width of the bitmap
+     * @param height Height of the bitmap
+     * @throws IOException If the temporary file next to the target cannot be created
+     */
+    public BitmapWriter(Path target, int width, int height) throws IOException {
+        if(width < 1 || height < 1) throw new IllegalArgumentException(width + "x" + height + " is not a valid size");
+
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.stride = BitmapReader.rowSize(width, 3);
+
+        long size = HEADER_SIZE + (long) stride * height;
+        if(size > 0xFFFFFFFFL) throw new IllegalArgumentException("A " + width + "x" + height + " bitmap is too big.");
+
+        temp = SLICFileWriter.createTemp(target);
+        channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put((byte) 'B').put((byte) 'M').putInt((int) size).putInt(0).putInt(HEADER_SIZE);
+            header.putInt(BitmapReader.INFO_HEADER_SIZE).putInt(width).putInt(height).putShort((short) 1)
+                  .putShort((short) 24).putInt(BitmapReader.BI_RGB).putInt((int) (size - HEADER_SIZE))
+                  .putInt(0).putInt(0).putInt(0).putInt(0);
+            header.flip();
+            write(header, 0);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the whole image, a band at a time.
+     * @param pixels The pixels of the image, as <strong>0xAARRGGBB</strong>, the alpha bits are not looked at
+     * @throws IOException If writing fails
+     */
+    public void write(ImagePixels pixels) throws IOException {
+        setRows(0, height, pixels);
+    }
+
+    /**
+     * Writes the rows [top, bottom) of the given view into their place in the bitmap.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @param rows A view holding those rows, reached with their own row numbers
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void setRows(int top, int bottom, ImagePixels rows) throws IOException {
+        if(top < 0 || bottom > height || top > bottom)
+            throw new IllegalArgumentException("Cannot write the rows [" + top + ", " + bottom + ")");
+
+        int chunkRows = Math.max(1, CHUNK_BYTES / stride);
+        for(int first = top; first < bottom; first += chunkRows) {
+            int last = Math.min(bottom, first + chunkRows);
+
+            // The rows of the chunk go next to each other into the file, upside down.
+            ByteBuffer bytes = ByteBuffer.allocate(stride * (last - first));
+            byte[] data = bytes.array();
+
+            for(int row = first; row < last; row++) {
+                int from = rows.index(row, 0), to = stride * (last - 1 - row);
+
+                for(int col = 0; col < width; col++, to += 3) {
+                    int pixel = rows.data[from + col];
+                    data[to] = (byte) pixel;
+                    data[to + 1] = (byte) (pixel >> 8);
+                    data[to + 2] = (byte) (pixel >> 16);
+                }
+            }
+
+            write(bytes, HEADER_SIZE + (long) stride * (height - last));
+        }
+    }
+
+    // Writes the whole buffer at the given position of the file.
+    private void write(ByteBuffer bytes, long position) throws IOException {
+        for(long at = position; bytes.hasRemaining(); ) at += channel.write(bytes, at);
+    }
+
+    /**
+     * Makes sure the bitmap has reached the disk and moves the temporary file onto the target. Every row must have
+     * been written before.
+     * @throws IOException If writing or renaming fails. The target is left untouched in this case.
+     */
+    public void commit() throws IOException {
+        channel.force(false);
+        channel.close();
+        SLICFileWriter.moveOnto(temp, target);
+
+        committed = true;
+        close();
+    }
+
+    /**
+     * Closes the file. If the bitmap has not been committed, the temporary file is deleted and the target is left
+     * untouched.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+
+        channel.close();
+        if(!committed) Files.deleteIfExists(temp);
+    }
+}
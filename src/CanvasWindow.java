@@ -3,9 +3,7 @@
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
-import javax.swing.ImageIcon;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JScrollPane;
 
 import static javax.swing.BorderFactory.createEmptyBorder;
@@ -17,8 +15,7 @@ import static javax.swing.BorderFactory.createEmptyBorder;
  */
 public class CanvasWindow extends JFrame{
 
-    private final static JLabel imageLabel = new JLabel();
-    private final static ImageIcon icon = new ImageIcon();
+    private final static ImageCanvas canvas = new ImageCanvas();
 
     public final static JScrollPane scrollPane = new JScrollPane();
     private final static int screenColCount = Toolkit.getDefaultToolkit().getScreenSize().width,
@@ -40,8 +37,7 @@ public class CanvasWindow extends JFrame{
 
         // Adding the scroll pane for scrollability
         scrollPane.setBorder(createEmptyBorder());
-        imageLabel.setBounds(0, 0, 800, 800);
-        scrollPane.getViewport().add(imageLabel);
+        scrollPane.getViewport().add(canvas);
 
         add(scrollPane, BorderLayout.CENTER);
 
@@ -57,9 +53,6 @@ public class CanvasWindow extends JFrame{
      * @since 1.0
      */
     public void showImage(BufferedImage image) {
-        // Removing and re-adding are crucial so that user won't
-        // have to resize the window for image to show up.
-
         for(int i = 0; i < SLICCodec.colCount; i++){
             image.setRGB(i, SLICCodec.rowCount, Color.lightGray.getRGB());
             image.setRGB(i, SLICCodec.rowCount + 1, Color.lightGray.getRGB());
@@ -69,11 +62,8 @@ public class CanvasWindow extends JFrame{
             image.setRGB(SLICCodec.colCount + 1, i, Color.lightGray.getRGB());
         }
 
-        // Viewing the buffered image to the scrollpane
-        scrollPane.getViewport().remove(imageLabel);
-        icon.setImage(image);
-        imageLabel.setIcon(icon);
-        scrollPane.getViewport().add(imageLabel);
+        // Viewing the document and its border on the canvas, which is exactly as big as they are
+        canvas.setImage(image, SLICCodec.colCount, SLICCodec.rowCount);
 
         // Resizing the window according to the size of the image.
         if(SLICCodec.colCount <= screenColCount)
@@ -88,6 +78,40 @@ public class CanvasWindow extends JFrame{
 
     }
 
+    /**
+     * Repaints only the given rows of the image being shown. Call this while the image is still being decompressed
+     * so the finished rows show up right away. It can be called from any thread.
+     * @param top The first row to be repainted
+     * @param bottom The row after the last row to be repainted
+     * @since 2.2
+     */
+    public void repaintRows(int top, int bottom) {
+        canvas.imageChanged(0, top, SLICCodec.colCount, bottom - top);
+    }
+
+    /**
+     * Sets what paints the rows of the image being shown that are not decompressed yet, when the canvas needs them.
+     * Showing another image drops it.
+     * @param loader The loader, or null once the whole image is decompressed
+     * @since 2.2
+     */
+    public void setRowLoader(ImageCanvas.RowLoader loader) {
+        canvas.setRowLoader(loader);
+    }
+
+    /**
+     * Repaints the given area of the image being shown. Call this after painting onto the image, the canvas does
+     * not see the change otherwise. It can be called from any thread.
+     * @param x Column of the top left corner of the area
+     * @param y Row of the top left corner of the area
+     * @param width Width of the area
+     * @param height Height of the area
+     * @since 2.2
+     */
+    public void repaintImage(int x, int y, int width, int height) {
+        canvas.imageChanged(x, y, width, height);
+    }
+
     void paintComponent(int x1, int y1, int x2, int y2){
         super.paintComponents(g);
 
@@ -0,0 +1,85 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.lang.management.ManagementFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Running totals of everything the codec has done since the app started, summed up from the
+ * <strong>CodecProgress</strong> of every image once it is finished. They are cheap enough to be kept all the time,
+ * and can be watched over JMX, with JConsole for instance, under the name <strong>SLICViewer:type=CodecMetrics</strong>.
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code long tiles = CodecMetrics.getInstance().getTilesEncoded();}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class CodecMetrics implements CodecMetricsMBean {
+
+    /** The name the metrics are registered with on the platform MBean server. */
+    public static final String OBJECT_NAME = "SLICViewer:type=CodecMetrics";
+
+    private static CodecMetrics instance = null;
+
+    private final LongAdder imagesEncoded = new LongAdder(), imagesDecoded = new LongAdder(),
+                            imagesStopped = new LongAdder(),
+                            pixelsEncoded = new LongAdder(), pixelsDecoded = new LongAdder(),
+                            tilesEncoded = new LongAdder(), tilesDecoded = new LongAdder(),
+                            bytesWritten = new LongAdder(), bytesRead = new LongAdder(),
+                            encodeMillis = new LongAdder(), decodeMillis = new LongAdder();
+
+    private CodecMetrics() {}
+
+    /**
+     * Returns the metrics, registering them on the platform MBean server the first time.
+     * @return The one and only metrics of the app
+     */
+    public static synchronized CodecMetrics getInstance() {
+        if(instance == null) {
+            instance = new CodecMetrics();
+
+            // The metrics are still kept if JMX is not available, they just cannot be seen from the outside.
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            } catch (JMException | SecurityException ignored) {}
+        }
+
+        return instance;
+    }
+
+    // Adds the numbers of a finished image.
+    void record(CodecProgress progress) {
+        if(!progress.isCompleted()) imagesStopped.increment();
+        else if(progress.isEncoding()) imagesEncoded.increment();
+        else imagesDecoded.increment();
+
+        if(progress.isEncoding()) {
+            pixelsEncoded.add(progress.pixelsCovered());
+            tilesEncoded.add(progress.tiles());
+            bytesWritten.add(progress.bytes());
+            encodeMillis.add(progress.elapsedMillis());
+        } else {
+            pixelsDecoded.add(progress.pixelsCovered());
+            tilesDecoded.add(progress.tiles());
+            bytesRead.add(progress.bytes());
+            decodeMillis.add(progress.elapsedMillis());
+        }
+    }
+
+    @Override public long getImagesEncoded() { return imagesEncoded.sum(); }
+    @Override public long getImagesDecoded() { return imagesDecoded.sum(); }
+    @Override public long getImagesStopped() { return imagesStopped.sum(); }
+    @Override public long getPixelsEncoded() { return pixelsEncoded.sum(); }
+    @Override public long getPixelsDecoded() { return pixelsDecoded.sum(); }
+    @Override public long getTilesEncoded() { return tilesEncoded.sum(); }
+    @Override public long getTilesDecoded() { return tilesDecoded.sum(); }
+    @Override public long getBytesWritten() { return bytesWritten.sum(); }
+    @Override public long getBytesRead() { return bytesRead.sum(); }
+    @Override public long getEncodeMillis() { return encodeMillis.sum(); }
+    @Override public long getDecodeMillis() { return decodeMillis.sum(); }
+}
@@ -0,0 +1,43 @@
+// Written by İ.K. Bilir (Abes400)
+
+/**
+ * The counters of <strong>CodecMetrics</strong> as they are seen over JMX, under the name
+ * <strong>SLICViewer:type=CodecMetrics</strong>.
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface CodecMetricsMBean {
+
+    /** @return Images compressed since the app started */
+    long getImagesEncoded();
+
+    /** @return Images decompressed since the app started */
+    long getImagesDecoded();
+
+    /** @return Images whose compression or decompression has been cancelled or has failed */
+    long getImagesStopped();
+
+    /** @return Pixels covered by the tiles written */
+    long getPixelsEncoded();
+
+    /** @return Pixels covered by the tiles read */
+    long getPixelsDecoded();
+
+    /** @return Tiles written */
+    long getTilesEncoded();
+
+    /** @return Tiles read */
+    long getTilesDecoded();
+
+    /** @return Tile bytes written */
+    long getBytesWritten();
+
+    /** @return Tile bytes read */
+    long getBytesRead();
+
+    /** @return Milliseconds spent on compressing */
+    long getEncodeMillis();
+
+    /** @return Milliseconds spent on decompressing */
+    long getDecodeMillis();
+}
@@ -0,0 +1,114 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of a single image being compressed or decompressed: how many of its pixels are covered by tiles, how
+ * many tiles and bytes have gone through the codec, and for how long it has been going on.
+ *
+ * <p>
+ *  The bands of an image are coded at the same time, so every band keeps its own counts and adds them here in
+ *  batches of <strong>SAMPLE_TILES</strong> tiles. That is also when a band checks whether the work has been
+ *  cancelled, so cancelling takes effect within a few thousand tiles.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class CodecProgress {
+
+    /** The listener is told about the progress at most once in this many milliseconds. */
+    public static final long REPORT_INTERVAL_MILLIS = 50;
+
+    // How many tiles a band codes before adding its counts here.
+    static final int SAMPLE_TILES = 1 << 12;
+
+    private final boolean encoding;
+    private final long totalPixels, start = System.nanoTime();
+    private final ProgressListener listener;
+
+    private final LongAdder pixels = new LongAdder(), tiles = new LongAdder(), bytes = new LongAdder();
+    private final AtomicLong lastReport = new AtomicLong(start);
+    private volatile long end;
+    private volatile boolean cancelled, completed;
+
+    CodecProgress(boolean encoding, int width, int height, ProgressListener listener) {
+        this.encoding = encoding;
+        this.totalPixels = (long) width * height;
+        this.listener = listener;
+    }
+
+    /** @return true if the image is being compressed, false if it is being decompressed */
+    public boolean isEncoding() { return encoding; }
+
+    /** @return The number of pixels of the image */
+    public long totalPixels() { return totalPixels; }
+
+    /** @return The number of pixels covered by tiles so far */
+    public long pixelsCovered() { return pixels.sum(); }
+
+    /** @return The number of tiles written or read so far */
+    public long tiles() { return tiles.sum(); }
+
+    /** @return The number of tile bytes written or read so far */
+    public long bytes() { return bytes.sum(); }
+
+    /** @return The time spent on the image so far, or in total once it is finished */
+    public long elapsedMillis() {
+        long until = end;
+        return TimeUnit.NANOSECONDS.toMillis((until == 0 ? System.nanoTime() : until) - start);
+    }
+
+    /** @return How much of the image is covered by tiles, from 0 to 100 */
+    public int percent() {
+        return totalPixels == 0 ? 100 : (int) (pixelsCovered() * 100 / totalPixels);
+    }
+
+    /**
+     * Asks the codec to stop working on the image. The codec stops with a <strong>CancellationException</strong>
+     * soon after, and a file being written is left untouched. It can be called from any thread.
+     */
+    public void cancel() { cancelled = true; }
+
+    /** @return true if the work has been cancelled */
+    public boolean isCancelled() { return cancelled; }
+
+    /** @return true once the whole image is coded, false while it is in progress or if it has stopped */
+    public boolean isCompleted() { return completed; }
+
+    void start() {
+        if(listener != null) listener.started(this);
+    }
+
+    // Adds the counts of a band, tells the listener about them if it has not been told for a while, and stops the
+    // band if the work has been cancelled.
+    void add(long pixelsCovered, long tilesCoded, long bytesCoded) {
+        pixels.add(pixelsCovered);
+        tiles.add(tilesCoded);
+        bytes.add(bytesCoded);
+        checkCancelled();
+
+        if(listener != null) {
+            long now = System.nanoTime(), last = lastReport.get();
+
+            // Only one band tells the listener, the others go on working.
+            if(now - last >= TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MILLIS) && lastReport.compareAndSet(last, now))
+                listener.progressMade(this);
+        }
+    }
+
+    // Stops the work by throwing a CancellationException if it has been cancelled.
+    void checkCancelled() {
+        if(cancelled) throw new CancellationException("Cancelled after " + tiles() + " tiles.");
+    }
+
+    // Stops the clock and hands the numbers over to the metrics.
+    void finish(boolean completed) {
+        this.completed = completed;
+        end = System.nanoTime();
+        CodecMetrics.getInstance().record(this);
+        if(listener != null) listener.finished(this);
+    }
+}
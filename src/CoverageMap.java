@@ -0,0 +1,176 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of which parts of an image are already covered by tiles, and where the next tile goes.
+ *
+ * <p>
+ *  When decompressing, it helps us determine where the next "tile" should go.
+ *  When compressing, it helps us determine where the next "tile" should be generated from.
+ *  In both cases the next tile goes to the <strong>first unpainted spot</strong>, scanning the image from the top
+ *  left corner row by row.
+ * </p>
+ * <p>
+ *  Every tile starts at the cursor, and the cursor only moves forward. So everything above the cursor row is painted,
+ *  and in every column the painted pixels from the cursor row downwards form one unbroken run. That is why a single
+ *  number per column, the <strong>skyline</strong>, is enough to know every painted pixel that matters. Finding the
+ *  next spot only ever moves forward over the skyline, and rows that are completely covered are skipped at once.
+ * </p>
+ * <p>
+ *  A map is sized to the image it is working on. Maps are pooled, so call <strong>obtain()</strong> to get one and
+ *  <strong>release()</strong> once the image is done, instead of creating a new one for every image.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class CoverageMap {
+
+    // No more maps than there are cores are kept around, that is how many codecs can work at once anyway.
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors();
+    private static final ConcurrentLinkedQueue<CoverageMap> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    // skyline[c] is the first row in column c, at or below the cursor row, that is not painted yet.
+    // It is only ever grown, so a map that has worked on a wide image can take a narrow one without allocating.
+    private int[] skyline = new int[0];
+
+    private int width, height;
+
+    // Holds where the top left corner of the tile to be created or drawn should be.
+    private int cursorRow, cursorCol;
+
+    private CoverageMap() {}
+
+    /**
+     * Returns an empty map for an image of the given size, reusing a pooled one if there is any.
+     * @param width Width of the image
+     * @param height Height of the image
+     * @return A map with nothing painted and the cursor at the top left corner
+     */
+    public static CoverageMap obtain(int width, int height) {
+        CoverageMap map = pool.poll();
+        if(map == null) map = new CoverageMap();
+        else pooled.decrementAndGet();
+
+        map.reset(width, height);
+        return map;
+    }
+
+    /**
+     * Gives the map back to the pool. The map must not be used after calling this.
+     */
+    public void release() {
+        if(pooled.incrementAndGet() <= MAX_POOLED) pool.offer(this);
+        else pooled.decrementAndGet();
+    }
+
+    private void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cursorRow = cursorCol = 0;
+
+        // Clearing only the part the image is going to use.
+        if(skyline.length < width) skyline = new int[width];
+        else Arrays.fill(skyline, 0, width, 0);
+    }
+
+    /**
+     * Moves the cursor to the first unpainted spot.
+     * @return false if every pixel of the image is already painted
+     */
+    public boolean nextUnpaintedSpot() {
+        int r = cursorRow, c = cursorCol;
+
+        while(r < height) {
+            // Everything to the left of the cursor is painted, so the search goes on from where it stopped.
+            for(; c < width; c++)
+                if(skyline[c] <= r) {
+                    cursorRow = r;
+                    cursorCol = c;
+                    return true;
+                }
+
+            // The whole row is painted. The next row that can have a gap in it is the lowest point of the skyline.
+            int lowest = Integer.MAX_VALUE;
+            for(int i = 0; i < width; i++) lowest = Math.min(lowest, skyline[i]);
+
+            r = Math.max(r + 1, lowest);
+            c = 0;
+        }
+
+        cursorRow = height;
+        cursorCol = 0;
+        return false;
+    }
+
+    /**
+     * Marks the tile whose top left corner is at the cursor as painted.
+     * The parts of the tile that fall outside the image are ignored.
+     * @param tileWidth Width of the tile
+     * @param tileHeight Height of the tile
+     */
+    public void paint(int tileWidth, int tileHeight) {
+        int right = cursorCol + Math.min(tileWidth, width - cursorCol);
+        int bottom = cursorRow + Math.min(tileHeight, height - cursorRow);
+
+        for(int c = cursorCol; c < right; c++)
+            if(skyline[c] < bottom) skyline[c] = bottom;
+    }
+
+    /**
+     * Counts the pixels of a tile on the cursor row that are not covered by any tile yet. The parts of the tile that
+     * fall outside the image are not counted.
+     * @param col Column of the top left corner of the tile
+     * @param tileWidth Width of the tile
+     * @param tileHeight Height of the tile
+     * @return The number of pixels the tile would newly cover
+     */
+    public int unpaintedPixels(int col, int tileWidth, int tileHeight) {
+        int right = col + Math.min(tileWidth, width - col);
+        int bottom = cursorRow + Math.min(tileHeight, height - cursorRow);
+
+        int count = 0;
+        for(int c = col; c < right; c++)
+            if(skyline[c] < bottom) count += bottom - Math.max(cursorRow, skyline[c]);
+        return count;
+    }
+
+    /**
+     * Finds the first unpainted pixel of the cursor row, at or to the right of the given column.
+     * @param from The column the search starts from
+     * @return The column of the pixel, or -1 if the rest of the row is painted
+     */
+    public int nextUnpaintedCol(int from) {
+        for(int c = from; c < width; c++)
+            if(skyline[c] <= cursorRow) return c;
+        return -1;
+    }
+
+    /**
+     * Tells whether the pixel is already covered by a tile.
+     * @param row Row of the pixel
+     * @param col Column of the pixel
+     * @return true if the pixel is painted
+     */
+    public boolean isPainted(int row, int col) {
+        return row < cursorRow || row < skyline[col];
+    }
+
+    /**
+     * Finds the first pixel of the column, at or below the cursor row, that is not covered by any tile yet.
+     * @param col The column
+     * @return The row of the pixel
+     */
+    public int unpaintedFrom(int col) {
+        return Math.max(cursorRow, skyline[col]);
+    }
+
+    /** @return The row of the cursor */
+    public int row() { return cursorRow; }
+
+    /** @return The column of the cursor */
+    public int col() { return cursorCol; }
+}
@@ -0,0 +1,34 @@
+// Written by İ.K. Bilir (Abes400)
+
+/**
+ * Hears about the progress of a <strong>SLICDecoder</strong>, so that an image can be shown while it is being
+ * decompressed.
+ *
+ * <p>
+ *  Tiles always go to the first unpainted spot, so once the decoder has moved past a row, that row will never change
+ *  again. The decoder reports such rows in groups. The bands of a version 2 file are decompressed at the same time,
+ *  so the groups do not necessarily arrive from top to bottom.
+ * </p>
+ * <p>
+ *  <strong>NOTICE</strong> The methods are called on the threads doing the decompression, not on the Swing event
+ *  dispatch thread, and possibly on several threads at once.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface DecodeListener {
+
+    /**
+     * Called once the size of the image is known, before any tile is painted.
+     * @param width Width of the image
+     * @param height Height of the image
+     */
+    default void decodeStarted(int width, int height) {}
+
+    /**
+     * Called when the rows [top, bottom) of the image are completely painted and will not change anymore.
+     * @param top The first finished row
+     * @param bottom The row after the last finished row
+     */
+    void rowsDecoded(int top, int bottom);
+}
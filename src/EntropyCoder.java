@@ -0,0 +1,289 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Shrinks the tiles of a band further, for version 2 files written with entropy coding on.
+ *
+ * <p>
+ *  Neighbouring tiles usually have the same or nearly the same color. So the color of every tile is predicted, either
+ *  as the color of the tile before it, or as the color right above it. Only when neither is right, the color is
+ *  stored, as the difference from the color of the tile before it. The mode and size of the tile and which prediction
+ *  is used make up one symbol, and the differences make up two more streams of symbols. Each stream is stored with
+ *  a canonical Huffman code of its own, built for the band.
+ * </p>
+ * <p>
+ *  The color above a tile is the color of the last tile painted in its column, that is why the encoder places the
+ *  tiles of the band once more while coding them, the same way the decoder will.
+ * </p>
+ * <p>
+ *  With a palette, the colors are indices into it. A color that is not predicted is then stored as the index itself,
+ *  in the stream of the green differences, and the red and blue stream stays empty.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class EntropyCoder {
+
+    // How the color of a tile is found, stored in the head symbol above the mode and size bits.
+    static final int SAME_AS_PREVIOUS = 0, SAME_AS_ABOVE = 1, DIFFERENCE = 2;
+
+    // Sizes of the alphabets of the three streams
+    static final int HEAD_SYMBOLS = 3 << 8, DIFFERENCE_SYMBOLS = 256;
+
+    // The color above a pixel that has nothing painted above it in the band, it never equals a real color.
+    private static final int NONE = -1;
+
+    private EntropyCoder() {}
+
+    /**
+     * Codes the tiles of a band.
+     * @param tiles The tiles of the band, stored as in version 1 or as extended tiles
+     * @param width Width of the band
+     * @param height Height of the band
+     * @param palette The palette of the image, or null to code the colors themselves
+     * @return The coded band
+     */
+    public static BandBuffer encode(BandBuffer tiles, int width, int height, Palette palette) {
+        int capacity = tiles.size() / 4;
+
+        int[] heads = new int[capacity], extensions = new int[capacity];
+        int[] greens = new int[capacity], redBlues = new int[capacity * 2];
+        int[] headFrequencies = new int[HEAD_SYMBOLS], greenFrequencies = new int[DIFFERENCE_SYMBOLS],
+              redBlueFrequencies = new int[DIFFERENCE_SYMBOLS];
+        int coded = 0, differences = 0;
+
+        int[] above = new int[width];
+        Arrays.fill(above, NONE);
+
+        // The tile before, its color as it is coded and its length, for the REPEATs.
+        int previous = 0, previousTile = 0, previousLength = 0;
+
+        CoverageMap coverage = CoverageMap.obtain(width, height);
+        try {
+            for(int position = 0; position < tiles.size(); coded++) {
+                int tile = tiles.getInt(position), length = tile & 0x3F;
+                position += 4;
+
+                if(SLICCodec.hasExtension(tile)) {
+                    extensions[coded] = tiles.getVarint(position);
+                    position += BandBuffer.varintSize(extensions[coded]);
+                    length = extensions[coded];
+                }
+
+                // A REPEAT keeps the color of the tile before, every repeated tile goes to the next spot.
+                if(SLICCodec.isRepeat(tile)) {
+                    heads[coded] = SAME_AS_PREVIOUS << 8 | (tile & 0xFF);
+                    headFrequencies[heads[coded]]++;
+                    for(int i = 0; i < extensions[coded] && coverage.nextUnpaintedSpot(); i++)
+                        paint(coverage, above, previousTile, previousLength, previous);
+                    continue;
+                }
+
+                if(!coverage.nextUnpaintedSpot()) break;
+                int color = tile >>> 8, col = coverage.col();
+                if(palette != null) color = palette.indexOf(color);
+
+                int prediction = color == previous ? SAME_AS_PREVIOUS : color == above[col] ? SAME_AS_ABOVE : DIFFERENCE;
+                heads[coded] = prediction << 8 | (tile & 0xFF);
+                headFrequencies[heads[coded]]++;
+
+                if(prediction == DIFFERENCE && palette != null) {
+                    greens[differences++] = color;
+                    greenFrequencies[color]++;
+                } else if(prediction == DIFFERENCE) {
+                    // The change in green usually comes with a similar change in red and blue.
+                    int green = ((color >> 8) - (previous >> 8)) & 0xFF;
+                    int red = ((color >> 16) - (previous >> 16) - green) & 0xFF;
+                    int blue = (color - previous - green) & 0xFF;
+
+                    greens[differences] = green;
+                    redBlues[differences * 2] = red;
+                    redBlues[differences * 2 + 1] = blue;
+                    greenFrequencies[green]++;
+                    redBlueFrequencies[red]++;
+                    redBlueFrequencies[blue]++;
+                    differences++;
+                }
+
+                previous = color;
+                previousTile = tile;
+                previousLength = length;
+                paint(coverage, above, tile, length, color);
+            }
+        } finally {
+            coverage.release();
+        }
+
+        HuffmanCode headCode = HuffmanCode.build(headFrequencies), greenCode = HuffmanCode.build(greenFrequencies),
+                    redBlueCode = HuffmanCode.build(redBlueFrequencies);
+
+        BandBuffer output = new BandBuffer(coded + 1024);
+        output.putInt(coded);
+        headCode.write(output);
+        greenCode.write(output);
+        redBlueCode.write(output);
+
+        HuffmanCode.BitWriter bits = new HuffmanCode.BitWriter(output);
+        for(int i = 0, difference = 0; i < coded; i++) {
+            headCode.write(bits, heads[i]);
+            if(SLICCodec.hasExtension(heads[i])) writeVarint(bits, extensions[i]);
+
+            if(heads[i] >> 8 == DIFFERENCE) {
+                greenCode.write(bits, greens[difference]);
+                if(palette == null) {
+                    redBlueCode.write(bits, redBlues[difference * 2]);
+                    redBlueCode.write(bits, redBlues[difference * 2 + 1]);
+                }
+                difference++;
+            }
+        }
+        bits.flush();
+
+        return output;
+    }
+
+    // Marks the tile at the cursor in the coverage map, and remembers its color as the color above the columns it
+    // covers.
+    private static void paint(CoverageMap coverage, int[] above, int tile, int length, int color) {
+        int mode = (tile >> 6) & 0x3, col = coverage.col();
+        int tileWidth = Math.min(SLICCodec.tileWidth(mode, length), above.length - col);
+
+        Arrays.fill(above, col, col + tileWidth, color);
+        coverage.paint(tileWidth, SLICCodec.tileHeight(mode, length));
+    }
+
+    // The bytes of a varint, 8 bits each.
+    private static void writeVarint(HuffmanCode.BitWriter bits, int value) {
+        while((value & ~0x7F) != 0) {
+            bits.write(value & 0x7F | 0x80, 8);
+            value >>>= 7;
+        }
+        bits.write(value, 8);
+    }
+
+    /**
+     * Turns a coded band back into tiles, one tile at a time, while the band is being painted.
+     */
+    public static class Decoder {
+
+        private final HuffmanCode headCode, greenCode, redBlueCode;
+        private final HuffmanCode.BitReader bits;
+        private final int[] above;
+        private final boolean indexed, extended;
+
+        // Bytes of the band taken by the tile count and the code tables.
+        private final int tableBytes;
+
+        // Tiles left to be read, and repeats left of the last tile read.
+        private int remaining, repeats;
+
+        // The last tile read, its color as it is coded and its length.
+        private int tile, previous, length;
+
+        /**
+         * Reads the code tables of the band.
+         * @param band The coded band, positioned at its first byte
+         * @param width Width of the band
+         * @param flags Flags of the file, telling whether there is a palette and whether there are extended tiles
+         * @throws IOException If the band is broken
+         */
+        public Decoder(ByteBuffer band, int width, int flags) throws IOException {
+            indexed = (flags & SLICCodec.FLAG_PALETTE) != 0;
+            extended = (flags & SLICCodec.FLAG_EXTENDED) != 0;
+
+            if(band.remaining() < 4) throw new IOException("Broken SLIC file, a band is cut off.");
+            int start = band.position();
+            remaining = band.getInt();
+            if(remaining < 0) throw new IOException("Broken SLIC file, a band is not valid.");
+
+            headCode = HuffmanCode.read(band, HEAD_SYMBOLS);
+            greenCode = HuffmanCode.read(band, DIFFERENCE_SYMBOLS);
+            redBlueCode = HuffmanCode.read(band, DIFFERENCE_SYMBOLS);
+            tableBytes = band.position() - start;
+            bits = new HuffmanCode.BitReader(band);
+
+            above = new int[width];
+            Arrays.fill(above, NONE);
+        }
+
+        /** @return true if there are tiles left in the band */
+        public boolean hasNext() {
+            return remaining > 0 || repeats > 0;
+        }
+
+        /**
+         * Reads the next tile, the one going to the given column of the cursor row.
+         * @param col Column of the first unpainted spot of the band
+         * @return The tile, stored as in version 1, or with the index of its color in place of the color. The size
+         *         bits of a tile longer than they can hold are 0, its length is given by <strong>length()</strong>.
+         */
+        public int next(int col) {
+            if(repeats > 0) repeats--;
+            else read(col);
+
+            // Most tiles are a single column wide, a plain loop is cheaper than Arrays.fill for them.
+            int mode = (tile >> 6) & 0x3;
+            int right = col + Math.min(SLICCodec.tileWidth(mode, length), above.length - col);
+            for(int c = col; c < right; c++) above[c] = previous;
+
+            return tile;
+        }
+
+        /** @return How many bytes of the band have been read so far */
+        public int bytesRead() {
+            return tableBytes + bits.bytesRead();
+        }
+
+        /** @return The length of the tile returned by <strong>next()</strong> */
+        public int length() {
+            return length;
+        }
+
+        // Reads the next tile of the band. A REPEAT leaves the tile as it is, counting one of its repeats.
+        private void read(int col) {
+            while(remaining > 0) {
+                remaining--;
+                int head = headCode.read(bits), prediction = head >> 8, color;
+
+                if(extended && SLICCodec.isRepeat(head)) {
+                    int count = readVarint();
+                    if(count == 0) continue;
+                    repeats = count - 1;
+                    return;
+                }
+
+                length = extended && SLICCodec.hasExtension(head) ? readVarint() : head & 0x3F;
+
+                if(prediction == SAME_AS_PREVIOUS) color = previous;
+                else if(prediction == SAME_AS_ABOVE) color = above[col] & SLICCodec.RGB_MASK;
+                else if(indexed) color = greenCode.read(bits);
+                else {
+                    int green = greenCode.read(bits), red = redBlueCode.read(bits), blue = redBlueCode.read(bits);
+                    color = ((previous >> 16) + green + red & 0xFF) << 16
+                          | ((previous >> 8) + green & 0xFF) << 8
+                          | (previous + green + blue & 0xFF);
+                }
+
+                previous = color;
+                tile = color << 8 | (head & 0xFF);
+                return;
+            }
+        }
+
+        // A varint in the bits, 8 bits a byte. One cut off by the end of the bits ends there.
+        private int readVarint() {
+            int value = 0;
+            for(int shift = 0; shift < 32; shift += 7) {
+                int part = bits.read(8);
+                value |= (part & 0x7F) << shift;
+                if(part < 0x80) break;
+            }
+            return value & Integer.MAX_VALUE;
+        }
+    }
+}
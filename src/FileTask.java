@@ -0,0 +1,195 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+/**
+ * Opening or saving a file in the background, so that the windows stay responsive however long it takes. The tasks
+ * run on an executor of their own, several of them at once, and every task reports its progress through the
+ * <strong>progress</strong> property of the <strong>SwingWorker</strong>, which the Inspector shows.
+ *
+ * <p>
+ *  A task working on a SLIC file hands itself to the codec as its <strong>ProgressListener</strong>, its progress
+ *  is the part of the image covered by tiles, and <strong>cancelTask()</strong> stops the codec within a few
+ *  thousand tiles. Other work, like reading a bitmap, only checks whether it has been cancelled between its steps.
+ * </p>
+ * <p>
+ *  A task that fails is shown to the user in a message dialog, once <strong>finished()</strong> has been called.
+ * </p>
+ * <p>
+ *  Every task tells which image it reads or writes. The image is not given back to the <strong>ImageBuffers</strong>
+ *  and cannot be painted on while a task still uses it.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code task.addPropertyChangeListener(e -> bar.setValue(task.getProgress()));
+ *     task.start();}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public abstract class FileTask extends SwingWorker<Void, Void> implements ProgressListener {
+
+    /** The most tasks working at once, the ones after wait for their turn. */
+    public static final int MAX_TASKS = 4;
+
+    // The threads the tasks work on. They are daemons so that they never keep the app alive.
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_TASKS, runnable -> {
+        Thread thread = new Thread(runnable, "SLIC file task");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The tasks started and not done yet, the oldest first. Only touched on the event dispatch thread.
+    private static final List<FileTask> running = new ArrayList<>();
+
+    private final String name;
+    private final boolean saving;
+
+    // The image the task reads or writes, only changed before the task starts or by the task itself.
+    private volatile BufferedImage image;
+    private volatile CodecProgress progress;
+    private volatile boolean cancelRequested;
+
+    /**
+     * @param name Name of the file, shown while the task is working
+     * @param saving true if the file is being saved, false if it is being opened
+     */
+    protected FileTask(String name, boolean saving) {
+        this.name = name;
+        this.saving = saving;
+    }
+
+    /**
+     * Starts the task on the executor, and shows it on the Inspector. Call it on the event dispatch thread.
+     */
+    public void start() {
+        running.add(this);
+        Main.inspector.showTask(this);
+        executor.execute(this);
+    }
+
+    /** @return Name of the file being opened or saved */
+    public String getName() { return name; }
+
+    /** @return true if the file is being saved, false if it is being opened */
+    public boolean isSaving() { return saving; }
+
+    /**
+     * Asks the task to stop. The codec stops soon after, and a file being saved is left untouched. It can be called
+     * from any thread.
+     */
+    public void cancelTask() {
+        cancelRequested = true;
+
+        CodecProgress codec = progress;
+        if(codec != null) codec.cancel();
+    }
+
+    /** @return true once the task has been asked to stop */
+    public boolean isCancelRequested() { return cancelRequested; }
+
+    /**
+     * @param image An image
+     * @return true if a task that is not done yet reads or writes the image
+     */
+    public static boolean isUsing(BufferedImage image) {
+        for(FileTask task : running) if(task.image == image) return true;
+        return false;
+    }
+
+    /** @return The tasks that are not done yet, the oldest first */
+    public static List<FileTask> runningTasks() {
+        return new ArrayList<>(running);
+    }
+
+    // Tells which image the task reads or writes from now on.
+    protected void useImage(BufferedImage image) {
+        this.image = image;
+    }
+
+    // The image the task reads or writes, or null if it has none yet.
+    protected BufferedImage image() {
+        return image;
+    }
+
+    // Stops the task here if it has been cancelled.
+    protected void checkCancelled() {
+        if(cancelRequested) throw new CancellationException(name + " has been cancelled.");
+    }
+
+    /**
+     * The work of the task, done on a thread of the executor.
+     * @throws IOException If the file cannot be read or written
+     */
+    protected abstract void work() throws IOException;
+
+    /**
+     * Called on the event dispatch thread once the task is done. A failure is shown to the user right after.
+     * @param failure null if the work is done, a <strong>CancellationException</strong> if it has been cancelled, or
+     *                what made it fail
+     */
+    protected abstract void finished(Throwable failure);
+
+    @Override
+    protected final Void doInBackground() throws IOException {
+        checkCancelled();
+        work();
+        setProgress(100);
+        return null;
+    }
+
+    @Override
+    protected final void done() {
+        running.remove(this);
+
+        Throwable failure = null;
+        try {
+            get();
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (InterruptedException | CancellationException e) {
+            failure = e;
+        }
+
+        finished(failure);
+
+        // The image is given back once no task uses it and it is not the document anymore.
+        Main.releaseImage(image);
+
+        if(failure != null && !(failure instanceof CancellationException)) showFailure(failure);
+    }
+
+    // Tells the user the file could not be opened or saved, and why.
+    private void showFailure(Throwable failure) {
+        ResourceBundle resourceBundle = StringBundle.getInstance();
+        String reason = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+
+        JOptionPane.showMessageDialog(null, name + ": " + reason,
+                resourceBundle.getString(saving ? "TASK_SAVE_ERR" : "TASK_OPEN_ERR"), JOptionPane.ERROR_MESSAGE);
+    }
+
+    @Override
+    public void started(CodecProgress progress) {
+        this.progress = progress;
+        if(cancelRequested) progress.cancel();
+    }
+
+    @Override
+    public void progressMade(CodecProgress progress) {
+        setProgress(Math.min(99, progress.percent()));
+    }
+}
@@ -0,0 +1,288 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A canonical Huffman code over the symbols 0 to <strong>alphabet - 1</strong>, as used by the entropy coded bands
+ * of version 2 files.
+ *
+ * <p>
+ *  Only the length of the code of every symbol is stored in the file, the codes themselves follow from the lengths.
+ *  Codes are never longer than <strong>MAX_LENGTH</strong> bits, so a symbol is decoded with a single lookup in a
+ *  table of 2^MAX_LENGTH entries.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class HuffmanCode {
+
+    // The longest code, short enough for the decoding table to be built quickly for every band.
+    static final int MAX_LENGTH = 12;
+
+    // Stored code lengths: 0 to MAX_LENGTH are lengths, ZERO_RUN + n stands for n + 1 symbols that do not occur.
+    private static final int ZERO_RUN = 16, MAX_ZERO_RUN = 256 - ZERO_RUN;
+
+    private final int[] lengths, codes;
+
+    // Indexed with the next MAX_LENGTH bits of the stream, (symbol << 4) | length of its code
+    private int[] table;
+
+    private HuffmanCode(int[] lengths) {
+        this.lengths = lengths;
+        this.codes = new int[lengths.length];
+
+        // Shorter codes come first, codes of the same length are in the order of their symbols.
+        int code = 0;
+        for(int length = 1; length <= MAX_LENGTH; length++) {
+            for(int symbol = 0; symbol < lengths.length; symbol++)
+                if(lengths[symbol] == length) codes[symbol] = code++;
+            code <<= 1;
+        }
+    }
+
+    /**
+     * Builds the code that stores symbols with the given frequencies in the fewest bits.
+     * @param frequencies How many times every symbol occurs
+     * @return The code
+     */
+    public static HuffmanCode build(int[] frequencies) {
+        int[] scaled = frequencies.clone();
+
+        // If the code comes out too long, the rare symbols are made a little less rare until it fits.
+        while(true) {
+            int[] lengths = lengths(scaled);
+            int longest = 0;
+            for(int length : lengths) longest = Math.max(longest, length);
+            if(longest <= MAX_LENGTH) return new HuffmanCode(lengths);
+
+            for(int i = 0; i < scaled.length; i++)
+                if(scaled[i] > 0) scaled[i] = Math.max(1, scaled[i] >> 1);
+        }
+    }
+
+    // Lengths of a plain Huffman code, by merging the two rarest nodes until there is one left.
+    private static int[] lengths(int[] frequencies) {
+        int symbols = frequencies.length;
+        int[] lengths = new int[symbols];
+
+        // Nodes 0 to symbols - 1 are the leaves, the merged nodes come after them.
+        int[] parent = new int[symbols * 2];
+        long[] weight = new long[symbols * 2];
+        PriorityQueue<Integer> queue =
+                new PriorityQueue<>((a, b) -> weight[a] != weight[b] ? Long.compare(weight[a], weight[b]) : a - b);
+
+        for(int symbol = 0; symbol < symbols; symbol++)
+            if(frequencies[symbol] > 0) {
+                weight[symbol] = frequencies[symbol];
+                queue.add(symbol);
+            }
+
+        // A single symbol still needs a code of one bit.
+        if(queue.size() == 1) lengths[queue.peek()] = 1;
+        if(queue.size() <= 1) return lengths;
+
+        int next = symbols;
+        while(queue.size() > 1) {
+            int a = queue.poll(), b = queue.poll();
+            weight[next] = weight[a] + weight[b];
+            parent[a] = parent[b] = next;
+            queue.add(next++);
+        }
+
+        int root = next - 1;
+        for(int symbol = 0; symbol < symbols; symbol++) {
+            if(frequencies[symbol] == 0) continue;
+            int depth = 0;
+            for(int node = symbol; node != root; node = parent[node]) depth++;
+            lengths[symbol] = depth;
+        }
+        return lengths;
+    }
+
+    /**
+     * Writes the code lengths, so that the code can be read back with <strong>read()</strong>.
+     * @param output The buffer the lengths are appended to
+     */
+    public void write(BandBuffer output) {
+        for(int symbol = 0; symbol < lengths.length; ) {
+            if(lengths[symbol] != 0) {
+                output.putByte(lengths[symbol++]);
+                continue;
+            }
+
+            int run = 0;
+            while(symbol < lengths.length && lengths[symbol] == 0 && run < MAX_ZERO_RUN) { symbol++; run++; }
+            output.putByte(ZERO_RUN + run - 1);
+        }
+    }
+
+    /**
+     * Reads a code written by <strong>write()</strong>.
+     * @param input The buffer, positioned at the lengths. It is left right after them.
+     * @param alphabet The number of symbols of the code
+     * @return The code, ready for decoding
+     * @throws IOException If the lengths do not make up a valid code
+     */
+    public static HuffmanCode read(ByteBuffer input, int alphabet) throws IOException {
+        int[] lengths = new int[alphabet];
+
+        for(int symbol = 0; symbol < alphabet; ) {
+            if(!input.hasRemaining()) throw new IOException("Broken SLIC file, a code table is cut off.");
+
+            int value = input.get() & 0xFF;
+            if(value <= MAX_LENGTH) lengths[symbol++] = value;
+            else if(value >= ZERO_RUN) symbol += value - ZERO_RUN + 1;
+            else throw new IOException("Broken SLIC file, a code is too long.");
+        }
+
+        HuffmanCode code = new HuffmanCode(lengths);
+        code.buildTable();
+        return code;
+    }
+
+    private void buildTable() throws IOException {
+        // A code with a single symbol leaves half of the table empty, the writer never produces those bits.
+        table = new int[1 << MAX_LENGTH];
+
+        for(int symbol = 0; symbol < lengths.length; symbol++) {
+            int length = lengths[symbol];
+            if(length == 0) continue;
+
+            int first = codes[symbol] << (MAX_LENGTH - length), count = 1 << (MAX_LENGTH - length);
+            if(first + count > table.length) throw new IOException("Broken SLIC file, a code table is not valid.");
+
+            Arrays.fill(table, first, first + count, symbol << 4 | length);
+        }
+    }
+
+    /**
+     * Writes the code of a symbol.
+     * @param bits The stream the code goes to
+     * @param symbol The symbol
+     */
+    public void write(BitWriter bits, int symbol) {
+        bits.write(codes[symbol], lengths[symbol]);
+    }
+
+    /**
+     * Reads a symbol.
+     * @param bits The stream the symbol is read from
+     * @return The symbol
+     */
+    public int read(BitReader bits) {
+        int entry = table[bits.peek(MAX_LENGTH)];
+        bits.skip(entry & 0xF);
+        return entry >>> 4;
+    }
+
+    /**
+     * Collects bits, most significant bit first, and appends them to a buffer byte by byte.
+     */
+    public static class BitWriter {
+
+        private final BandBuffer output;
+        private long pending;
+        private int pendingBits;
+
+        /**
+         * @param output The buffer the bytes are appended to
+         */
+        public BitWriter(BandBuffer output) {
+            this.output = output;
+        }
+
+        /**
+         * Writes the lowest bits of a value.
+         * @param value The value
+         * @param count How many of its bits are written, at most 32
+         */
+        public void write(int value, int count) {
+            pending = pending << count | (value & ((1L << count) - 1));
+            pendingBits += count;
+
+            while(pendingBits >= 8) {
+                pendingBits -= 8;
+                output.putByte((int) (pending >>> pendingBits));
+            }
+        }
+
+        /**
+         * Writes the bits left over, filling the last byte up with zeros.
+         */
+        public void flush() {
+            if(pendingBits > 0) write(0, 8 - pendingBits);
+        }
+    }
+
+    /**
+     * Reads the bits written by a <strong>BitWriter</strong>. Reading past the end gives zeros.
+     */
+    public static class BitReader {
+
+        // The bits are copied out of the buffer, bytes of an array are read much faster than those of a buffer.
+        private final byte[] input;
+        private int position;
+        private long buffered;
+        private int bufferedBits;
+
+        /**
+         * @param input The buffer, positioned at the first byte of the bits. All of its remaining bytes are taken.
+         */
+        public BitReader(ByteBuffer input) {
+            this.input = new byte[input.remaining()];
+            input.get(this.input);
+        }
+
+        /**
+         * Looks at the next bits without reading them.
+         * @param count How many bits, at most 32
+         * @return The bits
+         */
+        public int peek(int count) {
+            if(bufferedBits < count) refill();
+            return (int) (buffered >>> (bufferedBits - count)) & (int) ((1L << count) - 1);
+        }
+
+        // Brings in 32 more bits at once while there are that many left, byte by byte near the end.
+        private void refill() {
+            if(position + 4 <= input.length) {
+                buffered = buffered << 32 | (input[position] & 0xFFL) << 24 | (input[position + 1] & 0xFF) << 16
+                                          | (input[position + 2] & 0xFF) << 8 | (input[position + 3] & 0xFF);
+                position += 4;
+                bufferedBits += 32;
+            } else while(bufferedBits <= 56) {
+                buffered = buffered << 8 | (position < input.length ? input[position++] & 0xFF : 0);
+                bufferedBits += 8;
+            }
+        }
+
+        /** @return How many bytes of the buffer have been read so far, counting a byte once all its bits are */
+        public int bytesRead() {
+            return Math.max(0, position - bufferedBits / 8);
+        }
+
+        /**
+         * Skips bits that have been looked at with <strong>peek()</strong>.
+         * @param count How many bits
+         */
+        public void skip(int count) {
+            bufferedBits -= count;
+        }
+
+        /**
+         * Reads the next bits.
+         * @param count How many bits, at most 32
+         * @return The bits
+         */
+        public int read(int count) {
+            int value = peek(count);
+            skip(count);
+            return value;
+        }
+    }
+}
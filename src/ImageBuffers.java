@@ -0,0 +1,120 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.lang.ref.SoftReference;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * The images the app holds its documents in. An image is only as big as the document it holds, rounded up to a size
+ * class, so that the image of a document that is closed can be reused for the next one of about the same size.
+ *
+ * <p>
+ *  The sizes of the classes are multiples of <strong>SIZE_STEP</strong> both ways. At most
+ *  <strong>MAX_POOLED</strong> released images are kept, softly, so that they never keep the app from getting the
+ *  memory it needs; the garbage collector takes them back before it runs out of memory.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code BufferedImage image = ImageBuffers.obtain(width, height);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class ImageBuffers {
+
+    /** The sizes of the images are rounded up to a multiple of this. */
+    public static final int SIZE_STEP = 256;
+
+    /** The most released images kept for reuse. */
+    public static final int MAX_POOLED = 4;
+
+    // An image is only reused for a size whose class is at least this part of the image, so that a small document
+    // does not sit in a huge image.
+    private static final int MAX_WASTE = 2;
+
+    private static final LinkedList<SoftReference<BufferedImage>> pool = new LinkedList<>();
+    private static int imageType = BufferedImage.TYPE_INT_ARGB;
+
+    private ImageBuffers() {}
+
+    /**
+     * Chooses whether the images obtained from now on have an alpha channel. Documents are always opaque, an image
+     * without alpha is drawn onto the screen without blending it with what is behind it.
+     * @param alpha true for <strong>TYPE_INT_ARGB</strong> images, false for <strong>TYPE_INT_RGB</strong> images
+     */
+    public static synchronized void setAlpha(boolean alpha) {
+        imageType = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    /**
+     * Returns an image at least as big as the given size, reusing a released one if there is one of the right size.
+     * The pixels of a reused image are left as they were, clear the area to be used.
+     * @param width The least width of the image
+     * @param height The least height of the image
+     * @return The image, of type <strong>TYPE_INT_ARGB</strong> unless <strong>setAlpha(false)</strong> is called
+     */
+    public static synchronized BufferedImage obtain(int width, int height) {
+        int classWidth = sizeClass(width), classHeight = sizeClass(height);
+
+        for(Iterator<SoftReference<BufferedImage>> images = pool.iterator(); images.hasNext(); ) {
+            BufferedImage image = images.next().get();
+            if(image == null) {
+                images.remove();
+                continue;
+            }
+
+            if(image.getType() == imageType && image.getWidth() >= classWidth && image.getHeight() >= classHeight
+                    && (long) image.getWidth() * image.getHeight() <= (long) classWidth * classHeight * MAX_WASTE) {
+                images.remove();
+                return image;
+            }
+        }
+
+        return new BufferedImage(classWidth, classHeight, imageType);
+    }
+
+    /**
+     * Tells whether an image of the given size can be made: its pixels must fit into a single array, and into the
+     * memory the heap has left, counting the released images as free since they are only held softly.
+     * @param width The least width of the image
+     * @param height The least height of the image
+     * @return true if <strong>obtain(width, height)</strong> can be expected to succeed
+     */
+    public static boolean fits(int width, int height) {
+        long pixels = (long) sizeClass(width) * sizeClass(height);
+        if(pixels > Integer.MAX_VALUE - 8) return false;
+
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        return pixels * 4 <= free + pooledBytes();
+    }
+
+    // Bytes of the released images the garbage collector has not taken back yet.
+    private static synchronized long pooledBytes() {
+        long bytes = 0;
+        for(SoftReference<BufferedImage> reference : pool) {
+            BufferedImage image = reference.get();
+            if(image != null) bytes += 4L * image.getWidth() * image.getHeight();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gives an image back to be reused. It must not be used after calling this.
+     * @param image An image obtained from <strong>obtain()</strong>, or null
+     */
+    public static synchronized void release(BufferedImage image) {
+        if(image == null) return;
+        if(pool.size() == MAX_POOLED) pool.removeFirst();
+        pool.addLast(new SoftReference<>(image));
+    }
+
+    // The size rounded up to the next size class.
+    private static int sizeClass(int size) {
+        return (int) Math.min(Integer.MAX_VALUE, ((long) Math.max(size, 1) + SIZE_STEP - 1) / SIZE_STEP * SIZE_STEP);
+    }
+}
@@ -0,0 +1,283 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.SoftReference;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The images of the SLIC files opened most recently, decompressed, so that opening one of them again only copies
+ * its pixels instead of decompressing the whole file. An image is found by the path of its file, together with the
+ * size and the modification time of the file, so a file changed since it was cached is decompressed again.
+ *
+ * <p>
+ *  The pixels of the images take at most <strong>getBudget()</strong> bytes, the images used least recently are
+ *  dropped to make room for new ones. The budget is <strong>DEFAULT_BUDGET</strong> unless the app is run with
+ *  <strong>-Dslicviewer.cache.mb=N</strong>. With <strong>-Dslicviewer.cache.soft=true</strong> the images are held
+ *  softly too, so the garbage collector can take them before it runs out of memory.
+ * </p>
+ * <p>
+ *  The cache keeps copies of the pixels, the images they are copied onto can be painted on freely. How often files
+ *  are found in it can be watched over JMX, under the name <strong>SLICViewer:type=ImageCache</strong>. All the
+ *  methods can be called by several threads at once.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code ImageCache.Key key = ImageCache.keyOf(path);
+ *     ImageCache.CachedImage cached = ImageCache.getInstance().get(key);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class ImageCache implements ImageCacheMBean {
+
+    /** The name the cache is registered with on the platform MBean server. */
+    public static final String OBJECT_NAME = "SLICViewer:type=ImageCache";
+
+    /** The budget unless another one is given, a quarter of the heap, but no more than 256 MB. */
+    public static final long DEFAULT_BUDGET = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+
+    private static ImageCache instance = null;
+
+    // The images by their key, the one used least recently first.
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long budget, bytesUsed, hits, misses, evictions;
+    private boolean soft;
+
+    private ImageCache(long budget, boolean soft) {
+        this.budget = budget;
+        this.soft = soft;
+    }
+
+    /**
+     * Returns the cache, registering it on the platform MBean server the first time.
+     * @return The one and only cache of the app
+     */
+    public static synchronized ImageCache getInstance() {
+        if(instance == null) {
+            long megabytes = Long.getLong("slicviewer.cache.mb", -1);
+            instance = new ImageCache(megabytes < 0 ? DEFAULT_BUDGET : megabytes << 20,
+                    Boolean.getBoolean("slicviewer.cache.soft"));
+
+            // The cache still works if JMX is not available, it just cannot be seen from the outside.
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            } catch (JMException | SecurityException ignored) {}
+        }
+
+        return instance;
+    }
+
+    /**
+     * Reads what the file is known by in the cache. Read it before decompressing the file, so that the image put
+     * into the cache afterwards is never taken for a newer version of the file.
+     * @param file The path of the .slc file
+     * @return The key of the file
+     * @throws IOException If the attributes of the file cannot be read
+     */
+    public static Key keyOf(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Key(file.toAbsolutePath().normalize(), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * @param key The key of the file
+     * @return The image of the file, or null if it is not in the cache
+     */
+    public synchronized CachedImage get(Key key) {
+        Entry entry = entries.get(key);
+        int[] pixels = entry == null ? null : entry.pixels();
+
+        if(pixels == null) {
+            // An image the garbage collector has taken is not in the cache anymore.
+            if(entry != null) remove(key, entry);
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return new CachedImage(entry.width, entry.height, pixels);
+    }
+
+    /**
+     * Puts a copy of the top left <strong>width x height</strong> area of the image into the cache, dropping the
+     * images used least recently if there is no room for it. An image bigger than the whole budget is not cached.
+     * @param key The key the file had before it was decompressed
+     * @param image The image the file has been decompressed into
+     * @param width Width of the image of the file
+     * @param height Height of the image of the file
+     */
+    public void put(Key key, BufferedImage image, int width, int height) {
+        long bytes = 4L * width * height;
+        if(bytes > getBudget() || (long) width * height > Integer.MAX_VALUE) return;
+
+        // The pixels are copied before taking the lock, the other threads do not wait for it.
+        int[] pixels = new int[width * height];
+        PixelTransfer.read(image, width, height, pixels, 0, width);
+
+        synchronized(this) {
+            Entry old = entries.remove(key);
+            if(old != null) bytesUsed -= old.bytes;
+
+            Entry entry = new Entry(width, height, pixels, soft);
+            entries.put(key, entry);
+            bytesUsed += entry.bytes;
+            trim();
+        }
+    }
+
+    /** Drops every image. */
+    public synchronized void clear() {
+        entries.clear();
+        bytesUsed = 0;
+    }
+
+    // Drops images taken by the garbage collector, then the ones used least recently until the rest fit.
+    private void trim() {
+        for(Iterator<Entry> images = entries.values().iterator(); images.hasNext(); ) {
+            Entry entry = images.next();
+            if(entry.pixels() == null) {
+                images.remove();
+                bytesUsed -= entry.bytes;
+                evictions++;
+            }
+        }
+
+        for(Iterator<Entry> eldest = entries.values().iterator(); bytesUsed > budget && eldest.hasNext(); ) {
+            bytesUsed -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        bytesUsed -= entry.bytes;
+        evictions++;
+    }
+
+    @Override public synchronized long getHits() { return hits; }
+    @Override public synchronized long getMisses() { return misses; }
+    @Override public synchronized long getEvictions() { return evictions; }
+    @Override public synchronized int getEntries() { return entries.size(); }
+    @Override public synchronized long getBytesUsed() { return bytesUsed; }
+    @Override public synchronized long getBudget() { return budget; }
+    @Override public synchronized boolean isSoftReferences() { return soft; }
+
+    @Override
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public synchronized void setBudget(long bytes) {
+        budget = Math.max(0, bytes);
+        trim();
+    }
+
+    @Override
+    public synchronized void setSoftReferences(boolean soft) {
+        this.soft = soft;
+        for(Entry entry : entries.values()) entry.hold(soft);
+        trim();
+    }
+
+    /**
+     * What a file is known by in the cache: its path, and its size and modification time when it was read.
+     */
+    public static final class Key {
+
+        private final Path path;
+        private final long size, modified;
+
+        private Key(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return path.equals(key.path) && size == key.size && modified == key.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return (path.hashCode() * 31 + Long.hashCode(size)) * 31 + Long.hashCode(modified);
+        }
+    }
+
+    /**
+     * The image of a file found in the cache.
+     */
+    public static final class CachedImage {
+
+        private final int width, height;
+        private final int[] pixels;
+
+        private CachedImage(int width, int height, int[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        /** @return Width of the image */
+        public int getWidth() { return width; }
+
+        /** @return Height of the image */
+        public int getHeight() { return height; }
+
+        /**
+         * Copies the image onto the top left corner of the given image.
+         * @param image The target image, it must be at least as big as the cached one
+         */
+        public void copyTo(BufferedImage image) {
+            PixelTransfer.write(pixels, 0, width, image, width, height);
+        }
+    }
+
+    // The pixels of an image in the cache, row after row, held either strongly or softly.
+    private static class Entry {
+
+        final int width, height;
+        final long bytes;
+        private int[] strong;
+        private SoftReference<int[]> softly;
+
+        Entry(int width, int height, int[] pixels, boolean soft) {
+            this.width = width;
+            this.height = height;
+            this.bytes = 4L * pixels.length;
+            this.strong = pixels;
+            hold(soft);
+        }
+
+        // The pixels, or null once the garbage collector has taken them.
+        int[] pixels() {
+            return strong != null ? strong : softly.get();
+        }
+
+        void hold(boolean soft) {
+            int[] pixels = pixels();
+            if(pixels == null) return;
+
+            strong = soft ? null : pixels;
+            softly = soft ? new SoftReference<>(pixels) : null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// Written by İ.K. Bilir (Abes400)
+
+/**
+ * The <strong>ImageCache</strong> as it is seen over JMX, under the name <strong>SLICViewer:type=ImageCache</strong>.
+ * The budget and the soft references can be changed from there too.
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface ImageCacheMBean {
+
+    /** @return Files opened from the cache */
+    long getHits();
+
+    /** @return Files that had to be decompressed, because they were not in the cache */
+    long getMisses();
+
+    /** @return The part of the lookups found in the cache, from 0 to 1 */
+    double getHitRate();
+
+    /** @return Images dropped to keep the cache within its budget, or taken by the garbage collector */
+    long getEvictions();
+
+    /** @return Images in the cache */
+    int getEntries();
+
+    /** @return Bytes of pixels in the cache */
+    long getBytesUsed();
+
+    /** @return The most bytes of pixels the cache holds */
+    long getBudget();
+
+    /** @param bytes The most bytes of pixels the cache holds, 0 turns the cache off */
+    void setBudget(long bytes);
+
+    /** @return true if the images are held softly, so that the garbage collector can take them */
+    boolean isSoftReferences();
+
+    /** @param soft true to hold the images softly, so that the garbage collector can take them */
+    void setSoftReferences(boolean soft);
+}
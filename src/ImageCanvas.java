@@ -0,0 +1,214 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.swing.JComponent;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+/**
+ * The component the Canvas Window shows the document in. It is exactly as big as the document and its border, so the
+ * scroll pane scrolls over the document instead of over the whole image behind it, and it only paints the part of
+ * the document that can be seen.
+ *
+ * <p>
+ *  The image is painted in blocks of <strong>BLOCK_SIZE x BLOCK_SIZE</strong> pixels. Every block is copied once into
+ *  an image of its own, compatible with the screen so that it can be drawn fast, and the blocks used most recently are
+ *  kept for the next repaint, at most <strong>CACHED_BLOCKS</strong> of them. A repaint draws the blocks meeting the
+ *  area to be repainted, so scrolling and repainting cost as much as the window is big, however big the image is.
+ * </p>
+ * <p>
+ *  Blocks are not told about changes of the image by themselves, call <strong>imageChanged()</strong> after painting
+ *  onto the image.
+ * </p>
+ * <p>
+ *  While a document is still being decompressed, a <strong>RowLoader</strong> can be set to paint the rows a block
+ *  needs ahead of the rest. A block whose rows are not painted yet is asked for and drawn as it is, but not kept.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class ImageCanvas extends JComponent implements Scrollable {
+
+    /** Width and height of a block, in pixels. */
+    public static final int BLOCK_SIZE = 256;
+
+    /** The most blocks kept at once, enough for a few screens of pixels. */
+    public static final int CACHED_BLOCKS = 96;
+
+    // The light gray border around the document, painted onto the image by the Canvas Window.
+    private static final int BORDER = 2;
+
+    // How far a click on the arrows of a scroll bar scrolls.
+    private static final int UNIT_INCREMENT = 16;
+
+    private BufferedImage image;
+    private int documentWidth, documentHeight;
+    private RowLoader loader;
+
+    // The blocks by their row and column, the one used least recently first. Only touched on the event dispatch
+    // thread.
+    private final LinkedHashMap<Long, BufferedImage> blocks = new LinkedHashMap<>(CACHED_BLOCKS * 2, 0.75f, true);
+
+    /**
+     * Shows the top left <strong>width x height</strong> area of the image, and its border.
+     * @param image The image holding the document
+     * @param width Width of the document
+     * @param height Height of the document
+     */
+    public void setImage(BufferedImage image, int width, int height) {
+        this.image = image;
+        this.documentWidth = width;
+        this.documentHeight = height;
+        this.loader = null;
+        blocks.clear();
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Sets what paints the rows of the document that are not painted yet, when a block needs them. It is dropped by
+     * <strong>setImage()</strong>.
+     * @param loader The loader, or null once every row of the document is painted
+     */
+    public void setRowLoader(RowLoader loader) {
+        this.loader = loader;
+        repaint();
+    }
+
+    /**
+     * Drops the blocks meeting the given area of the image, and repaints it. It can be called from any thread, the
+     * blocks are dropped on the event dispatch thread, after any repaint that is going on.
+     * @param x Column of the top left corner of the area
+     * @param y Row of the top left corner of the area
+     * @param width Width of the area
+     * @param height Height of the area
+     */
+    public void imageChanged(int x, int y, int width, int height) {
+        if(!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> imageChanged(x, y, width, height));
+            return;
+        }
+        if(width <= 0 || height <= 0) return;
+
+        int firstRow = Math.max(0, y) / BLOCK_SIZE, lastRow = Math.max(0, y + height - 1) / BLOCK_SIZE;
+        int firstCol = Math.max(0, x) / BLOCK_SIZE, lastCol = Math.max(0, x + width - 1) / BLOCK_SIZE;
+
+        for(Iterator<Long> keys = blocks.keySet().iterator(); keys.hasNext(); ) {
+            long key = keys.next();
+            int row = (int) (key >>> 32), col = (int) key;
+            if(row >= firstRow && row <= lastRow && col >= firstCol && col <= lastCol) keys.remove();
+        }
+
+        repaint(x, y, width, height);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if(image == null) return;
+
+        // Only the document and its border are painted, and only where the image reaches.
+        Rectangle area = new Rectangle(0, 0, Math.min(image.getWidth(), documentWidth + BORDER),
+                                       Math.min(image.getHeight(), documentHeight + BORDER));
+        Rectangle clip = g.getClipBounds();
+        if(clip != null) area = area.intersection(clip);
+        if(area.isEmpty()) return;
+
+        for(int row = area.y / BLOCK_SIZE; row <= (area.y + area.height - 1) / BLOCK_SIZE; row++)
+            for(int col = area.x / BLOCK_SIZE; col <= (area.x + area.width - 1) / BLOCK_SIZE; col++)
+                g.drawImage(block(row, col), col * BLOCK_SIZE, row * BLOCK_SIZE, null);
+    }
+
+    // Returns the block at the given row and column, copying it out of the image if it is not kept.
+    private BufferedImage block(int row, int col) {
+        long key = (long) row << 32 | col;
+        BufferedImage block = blocks.get(key);
+        if(block != null) return block;
+
+        int x = col * BLOCK_SIZE, y = row * BLOCK_SIZE;
+        int width = Math.min(BLOCK_SIZE, image.getWidth() - x), height = Math.min(BLOCK_SIZE, image.getHeight() - y);
+
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        block = configuration != null ? configuration.createCompatibleImage(width, height)
+                                      : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics blockGraphics = block.getGraphics();
+        blockGraphics.drawImage(image.getSubimage(x, y, width, height), 0, 0, null);
+        blockGraphics.dispose();
+
+        // A block missing some of its rows is repainted once the loader tells they are painted.
+        int bottom = Math.min(y + height, documentHeight);
+        if(loader != null && y < bottom && !loader.isLoaded(y, bottom)) {
+            loader.load(y, bottom);
+            return block;
+        }
+
+        if(blocks.size() == CACHED_BLOCKS) {
+            Iterator<BufferedImage> eldest = blocks.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        blocks.put(key, block);
+        return block;
+    }
+
+    /**
+     * Paints the rows of a document that is still being decompressed, as the canvas needs them. The rows painted have
+     * to be reported to <strong>imageChanged()</strong>.
+     */
+    public interface RowLoader {
+
+        /**
+         * Tells if the given rows are painted onto the image.
+         * @param top The first row
+         * @param bottom The row after the last row
+         * @return true if every one of the rows is painted
+         */
+        boolean isLoaded(int top, int bottom);
+
+        /**
+         * Starts painting the given rows, without waiting for them. It is called on the event dispatch thread.
+         * @param top The first row
+         * @param bottom The row after the last row
+         */
+        void load(int top, int bottom);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return image == null ? new Dimension() : new Dimension(documentWidth + BORDER, documentHeight + BORDER);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return UNIT_INCREMENT;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * A view on the pixels of a <strong>BufferedImage</strong>, or on a few rows of a <strong>LargeImage</strong>, as one
+ * flat <strong>int</strong> array, so that the codec can reach any pixel with plain array indexing instead of calling
+ * <strong>getRGB()</strong> and <strong>setRGB()</strong> for every single pixel.
+ *
+ * <p>
+ *  The pixel at <strong>(row, col)</strong> is <strong>data[offset + row * stride + col]</strong>, stored as
+ *  <strong>0xAARRGGBB</strong>.
+ * </p>
+ * <p>
+ *  For <strong>TYPE_INT_RGB</strong> and <strong>TYPE_INT_ARGB</strong> images, <strong>data</strong> is the very
+ *  array backing the image, so nothing is copied. Any other image type is copied into a fresh array, and
+ *  <strong>commit()</strong> has to be called to write the changes back onto the image.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class ImagePixels {
+
+    /** The array holding the pixels. */
+    public final int[] data;
+
+    /** Index of the top left pixel in <strong>data</strong>, and the distance between two vertically adjacent pixels. */
+    public final int offset, stride;
+
+    /** Size of the area of the image that is covered by this view. */
+    public final int width, height;
+
+    private final BufferedImage image;
+    private final boolean direct;
+
+    private ImagePixels(BufferedImage image, int[] data, int offset, int stride, int width, int height, boolean direct) {
+        this.image = image;
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+        this.direct = direct;
+    }
+
+    /**
+     * Creates a view on the top left <strong>width x height</strong> area of the given image.
+     * @param image The image whose pixels will be accessed
+     * @param width Width of the area, cannot be larger than the width of the image
+     * @param height Height of the area, cannot be larger than the height of the image
+     * @return A view sharing the memory of the image if possible, a copy otherwise
+     */
+    public static ImagePixels of(BufferedImage image, int width, int height) {
+        if(width > image.getWidth() || height > image.getHeight())
+            throw new IllegalArgumentException(width + "x" + height + " does not fit into a "
+                    + image.getWidth() + "x" + image.getHeight() + " image");
+
+        WritableRaster raster = image.getRaster();
+
+        if((image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+
+            // Sub images share the buffer of their parent, the translation tells where they start in it.
+            int offset = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX();
+
+            return new ImagePixels(image, buffer.getData(), offset, stride, width, height, true);
+        }
+
+        int[] copy = new int[width * height];
+        PixelTransfer.read(image, width, height, copy, 0, width);
+        return new ImagePixels(image, copy, 0, width, width, height, false);
+    }
+
+    /**
+     * Creates a view on the rows [top, bottom) of an image of the given width, backed by a fresh array holding just
+     * those rows. The rows are still reached with their own row numbers, <strong>index(top, 0)</strong> is 0.
+     * @param width Width of the image
+     * @param top The first row of the view
+     * @param bottom The row below the last one
+     * @return The view, all of its pixels are 0
+     */
+    public static ImagePixels ofRows(int width, int top, int bottom) {
+        long size = (long) width * (bottom - top);
+        if(size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException((bottom - top) + " rows of " + width + " pixels do not fit into an array");
+
+        // -top * width overflows for the rows far down a large image, but offset + row * stride overflows back to
+        // the right index for every row of the view.
+        return new ImagePixels(null, new int[(int) size], -top * width, width, width, bottom - top, true);
+    }
+
+    /**
+     * Returns the index of the pixel at the given position in <strong>data</strong>.
+     * @param row Row of the pixel
+     * @param col Column of the pixel
+     * @return The index of the pixel
+     */
+    public int index(int row, int col) {
+        return offset + row * stride + col;
+    }
+
+    /**
+     * Writes the pixels back onto the image if they were copied. Does nothing if the view shares the memory of the
+     * image.
+     */
+    public void commit() {
+        if(!direct) PixelTransfer.write(data, offset, stride, image, width, height);
+    }
+}
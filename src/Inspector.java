@@ -51,6 +51,12 @@ public class Inspector extends JDialog {
     public static JSlider thicknessControl = new JSlider(1, 50, 1);
     public static JCheckBox fill = new JCheckBox();
 
+    // The file being opened or saved in the background, its progress, and the button to cancel it
+    private final JPanel taskPanel = new JPanel(new BorderLayout());
+    private final JProgressBar taskProgress = new JProgressBar(0, 100);
+    private final JButton cancelTask = new JButton(resourceBundle.getString("TASK_CANCEL"));
+    private FileTask shownTask;
+
 
 
     /**
@@ -61,9 +67,9 @@ public class Inspector extends JDialog {
         // Initializing the dialog base
         setTitle(resourceBundle.getString("INSPECTOR_TITLE"));
         if(System.getProperty("os.name").toLowerCase().contains("mac"))
-            setPreferredSize(new Dimension(210, 270));
+            setPreferredSize(new Dimension(210, 300));
         else
-            setPreferredSize(new Dimension(225, 270));
+            setPreferredSize(new Dimension(225, 300));
 
         setResizable(false);
 
@@ -165,6 +171,15 @@ public class Inspector extends JDialog {
         subGri.add(innerGri2);
         subGri.add(innerGri);
 
+        // Only shown while a file is being opened or saved
+        taskProgress.setStringPainted(true);
+        cancelTask.setFocusable(false);
+        cancelTask.addActionListener(e -> { if(shownTask != null) shownTask.cancelTask(); });
+        taskPanel.add(taskProgress, BorderLayout.CENTER);
+        taskPanel.add(cancelTask, BorderLayout.EAST);
+        taskPanel.setVisible(false);
+        add(taskPanel, BorderLayout.SOUTH);
+
         pack();
 
         // Assigning functions
@@ -237,26 +252,67 @@ public class Inspector extends JDialog {
     }
 
     /**
-     * Simply call this function to avoid malfunctioning by not allowing user to open another file while the .slc file
-     * is being uncompressed.
+     * Simply call this function to avoid malfunctioning by not allowing user to save the file while it is still being
+     * opened. Other files can still be opened in the meantime.
      * @param name Name of the file opening at the moment
      * @since 1.0
      */
     public void waitOpening(String name) {
         saveAsSLC.setEnabled(false);
         saveAsBMP.setEnabled(false);
-        open.setEnabled(false);
     }
 
     /**
-     * Simply call this function to avoid malfunctioning by not allowing user to open another file while the .slc file
-     * is being compressed.
+     * Simply call this function to avoid malfunctioning by not allowing user to save the file again while it is
+     * being compressed. Other files can still be opened in the meantime.
      * @since 1.0
      */
     public void waitCompressing() {
         saveAsSLC.setEnabled(false);
         saveAsBMP.setEnabled(false);
-        open.setEnabled(false);
+    }
+
+    /**
+     * Simply call this function to avoid malfunctioning by not allowing user to save an overview of a file too big to
+     * be opened, as it would be saved instead of the file itself.
+     * @since 2.2
+     */
+    public void showOverview() {
+        saveAsSLC.setEnabled(false);
+        saveAsBMP.setEnabled(false);
+    }
+
+    /**
+     * Shows the progress of a file being opened or saved in the background, with a button to cancel it. Once it is
+     * done, the newest task still working is shown, if there is one.
+     * @param task The task just started
+     * @since 2.2
+     */
+    public void showTask(FileTask task) {
+        task.addPropertyChangeListener(e -> {
+            if(task != shownTask) return;
+
+            if("progress".equals(e.getPropertyName())) updateTask();
+            else if(task.isDone()) {
+                // The newest task still working takes its place.
+                shownTask = null;
+                for(FileTask other : FileTask.runningTasks()) if(!other.isDone()) shownTask = other;
+                updateTask();
+            }
+        });
+
+        shownTask = task;
+        updateTask();
+    }
+
+    private void updateTask() {
+        taskPanel.setVisible(shownTask != null);
+        if(shownTask == null) return;
+
+        String doing = resourceBundle.getString(shownTask.isSaving() ? "TASK_SAVING" : "TASK_OPENING");
+        taskProgress.setValue(shownTask.getProgress());
+        taskProgress.setString(shownTask.getName() + " " + shownTask.getProgress() + "%");
+        taskProgress.setToolTipText(doing + " " + shownTask.getName());
     }
 
     /**
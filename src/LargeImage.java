@@ -0,0 +1,269 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An image too big for the heap, with the pixels kept in a scratch file instead. It can be as tall as 2^31 - 1 pixels
+ * and as wide as <strong>MAX_WIDTH</strong>, as long as the disk has room for it, and can be compressed into and
+ * decompressed from a version 2 SLIC file band by band.
+ *
+ * <p>
+ *  The image is split into square blocks of <strong>BLOCK_SIZE x BLOCK_SIZE</strong> pixels, stored one after the
+ *  other in the scratch file. Only the blocks used most recently are kept in memory, at most
+ *  <strong>CACHED_BLOCKS</strong> of them, and a block that has been changed is written back to the file when it
+ *  has to make room for another one. The scratch file is sparse where the system allows it, blocks that were never
+ *  written take no room and their pixels are 0, just like those of a new <strong>BufferedImage</strong>.
+ * </p>
+ * <p>
+ *  Pixels are stored as <strong>0xAARRGGBB</strong>. All the methods can be called by several threads at once, the
+ *  codec (de)compresses the bands of an image in parallel. Copying the pixels from and to the blocks takes turns
+ *  though, one area at a time. The scratch file is deleted once the image is closed.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code try(LargeImage image = new SLICDecoder().decodeLarge(path)) { int rgb = image.getRGB(x, y); }}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class LargeImage implements RowSource, RowSink, AutoCloseable {
+
+    /** Width and height of a block, in pixels. */
+    public static final int BLOCK_SIZE = 256;
+
+    /** The most blocks kept in memory at once, 64 MB of pixels. */
+    public static final int CACHED_BLOCKS = 256;
+
+    /**
+     * The widest image. The codec takes a whole band of rows into a single array, a band of
+     * <strong>SLICCodec.DEFAULT_BAND_HEIGHT</strong> rows of this width is the most an array can hold. Files with
+     * taller bands have to be narrower still.
+     */
+    public static final int MAX_WIDTH = (Integer.MAX_VALUE - 8) / SLICCodec.DEFAULT_BAND_HEIGHT;
+
+    private static final int BLOCK_PIXELS = BLOCK_SIZE * BLOCK_SIZE;
+
+    private final int width, height, blocksAcross;
+    private final FileChannel scratch;
+
+    // The blocks in memory by their number, the one used least recently first.
+    private final LinkedHashMap<Long, Block> blocks = new LinkedHashMap<>(CACHED_BLOCKS * 2, 0.75f, true);
+
+    // Bytes of a block on their way between the file and the memory, only used while holding the lock.
+    private final ByteBuffer transfer = ByteBuffer.allocateDirect(BLOCK_PIXELS * 4);
+
+    /**
+     * Creates an image whose scratch file is put into the temporary directory of the system.
+     * @param width Width of the image
+     * @param height Height of the image
+     * @throws IOException If the scratch file cannot be created
+     * @throws IllegalArgumentException If the image is wider than <strong>MAX_WIDTH</strong>
+     */
+    public LargeImage(int width, int height) throws IOException {
+        this(width, height, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates an image whose scratch file is put into the given directory.
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param scratchDirectory The directory the scratch file is created in, it needs room for 4 bytes a pixel
+     * @throws IOException If the scratch file cannot be created
+     * @throws IllegalArgumentException If the image is wider than <strong>MAX_WIDTH</strong>
+     */
+    public LargeImage(int width, int height, Path scratchDirectory) throws IOException {
+        if(width < 0 || height < 0) throw new IllegalArgumentException(width + "x" + height + " is not a valid size");
+        if(width > MAX_WIDTH)
+            throw new IllegalArgumentException(width + " pixels is wider than the " + MAX_WIDTH + " a LargeImage can be");
+
+        this.width = width;
+        this.height = height;
+        this.blocksAcross = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        Path file = Files.createTempFile(scratchDirectory, "slic", ".pixels");
+        scratch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.SPARSE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /** @return The width of the image */
+    public int getWidth() { return width; }
+
+    /** @return The height of the image */
+    public int getHeight() { return height; }
+
+    /**
+     * @param x Column of the pixel
+     * @param y Row of the pixel
+     * @return The pixel, as <strong>0xAARRGGBB</strong>
+     * @throws IOException If the block of the pixel cannot be read
+     */
+    public int getRGB(int x, int y) throws IOException {
+        int[] pixel = new int[1];
+        getRGB(x, y, 1, 1, pixel, 0, 1);
+        return pixel[0];
+    }
+
+    /**
+     * @param x Column of the pixel
+     * @param y Row of the pixel
+     * @param rgb The new pixel, as <strong>0xAARRGGBB</strong>
+     * @throws IOException If the block of the pixel cannot be read
+     */
+    public void setRGB(int x, int y, int rgb) throws IOException {
+        setRGB(x, y, 1, 1, new int[] { rgb }, 0, 1);
+    }
+
+    /**
+     * Copies the pixels of an area of the image into an array, like <strong>BufferedImage.getRGB()</strong> does.
+     * @param x Column of the top left corner of the area
+     * @param y Row of the top left corner of the area
+     * @param w Width of the area
+     * @param h Height of the area
+     * @param rgb The array the pixels are copied into
+     * @param offset Index of the top left pixel in the array
+     * @param scansize Distance between two vertically adjacent pixels in the array
+     * @throws IOException If the blocks of the area cannot be read
+     */
+    public void getRGB(int x, int y, int w, int h, int[] rgb, int offset, int scansize) throws IOException {
+        copy(x, y, w, h, rgb, offset, scansize, false);
+    }
+
+    /**
+     * Copies the pixels of an array onto an area of the image, like <strong>BufferedImage.setRGB()</strong> does.
+     * @param x Column of the top left corner of the area
+     * @param y Row of the top left corner of the area
+     * @param w Width of the area
+     * @param h Height of the area
+     * @param rgb The array holding the pixels
+     * @param offset Index of the top left pixel in the array
+     * @param scansize Distance between two vertically adjacent pixels in the array
+     * @throws IOException If the blocks of the area cannot be read, or the blocks making room for them written
+     */
+    public void setRGB(int x, int y, int w, int h, int[] rgb, int offset, int scansize) throws IOException {
+        copy(x, y, w, h, rgb, offset, scansize, true);
+    }
+
+    /**
+     * Reads the rows [top, bottom) into a view of their own.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @return The rows, reached with their own row numbers
+     * @throws IOException If the rows cannot be read
+     */
+    @Override
+    public ImagePixels rows(int top, int bottom) throws IOException {
+        ImagePixels rows = ImagePixels.ofRows(width, top, bottom);
+        getRGB(0, top, width, bottom - top, rows.data, rows.index(top, 0), rows.stride);
+        return rows;
+    }
+
+    /**
+     * Writes the rows [top, bottom) of the given view onto the image.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @param rows A view holding those rows, reached with their own row numbers
+     * @throws IOException If the rows cannot be written
+     */
+    @Override
+    public void setRows(int top, int bottom, ImagePixels rows) throws IOException {
+        setRGB(0, top, width, bottom - top, rows.data, rows.index(top, 0), rows.stride);
+    }
+
+    // Copies an area between the array and the image, block by block. A single lock guards all of the blocks and the
+    // transfer buffer, so the bands copy their rows one after the other.
+    private synchronized void copy(int x, int y, int w, int h, int[] rgb, int offset, int scansize, boolean store)
+            throws IOException {
+        if(x < 0 || y < 0 || w < 0 || h < 0 || x > width - w || y > height - h)
+            throw new IllegalArgumentException("The area " + w + "x" + h + " at " + x + "," + y + " is out of the image");
+        if(w == 0 || h == 0) return;
+
+        for(int blockRow = y / BLOCK_SIZE; blockRow <= (y + h - 1) / BLOCK_SIZE; blockRow++) {
+            int top = Math.max(y, blockRow * BLOCK_SIZE), bottom = Math.min(y + h, (blockRow + 1) * BLOCK_SIZE);
+
+            for(int blockCol = x / BLOCK_SIZE; blockCol <= (x + w - 1) / BLOCK_SIZE; blockCol++) {
+                int left = Math.max(x, blockCol * BLOCK_SIZE), right = Math.min(x + w, (blockCol + 1) * BLOCK_SIZE);
+                Block block = block((long) blockRow * blocksAcross + blockCol);
+
+                for(int row = top; row < bottom; row++) {
+                    int inBlock = (row % BLOCK_SIZE) * BLOCK_SIZE + left % BLOCK_SIZE;
+                    int inArray = offset + (row - y) * scansize + (left - x);
+
+                    if(store) System.arraycopy(rgb, inArray, block.pixels, inBlock, right - left);
+                    else System.arraycopy(block.pixels, inBlock, rgb, inArray, right - left);
+                }
+                block.dirty |= store;
+            }
+        }
+    }
+
+    // Returns the block with the given number, reading it from the scratch file if it is not in memory. The block
+    // used least recently is written back and dropped if there are too many of them.
+    private Block block(long number) throws IOException {
+        Block block = blocks.get(number);
+        if(block != null) return block;
+
+        block = new Block(number);
+        transfer.clear();
+        long position = number * BLOCK_PIXELS * 4;
+        while(transfer.hasRemaining())
+            if(scratch.read(transfer, position + transfer.position()) < 0) break;
+
+        // The part beyond the end of the file has never been written, it stays 0.
+        transfer.flip();
+        transfer.asIntBuffer().get(block.pixels, 0, transfer.remaining() / 4);
+
+        if(blocks.size() == CACHED_BLOCKS) {
+            Iterator<Block> eldest = blocks.values().iterator();
+            write(eldest.next());
+            eldest.remove();
+        }
+
+        blocks.put(number, block);
+        return block;
+    }
+
+    // Writes the block back to the scratch file if it has been changed.
+    private void write(Block block) throws IOException {
+        if(!block.dirty) return;
+
+        transfer.clear();
+        transfer.asIntBuffer().put(block.pixels);
+
+        long position = block.number * BLOCK_PIXELS * 4;
+        while(transfer.hasRemaining()) scratch.write(transfer, position + transfer.position());
+        block.dirty = false;
+    }
+
+    /**
+     * Deletes the scratch file. The image must not be used after calling this.
+     * @throws IOException If the scratch file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        blocks.clear();
+        scratch.close();
+    }
+
+    // The pixels of a block, row after row.
+    private static class Block {
+
+        final long number;
+        final int[] pixels = new int[BLOCK_PIXELS];
+        boolean dirty;
+
+        Block(long number) {
+            this.number = number;
+        }
+    }
+}
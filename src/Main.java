@@ -11,8 +11,10 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
 
 import javax.imageio.ImageIO;
 
@@ -26,17 +28,24 @@ public class Main {
     private static ResourceBundle resourceBundle = StringBundle.getInstance();
 
     // image : The object that is sent to the canvasWindow,
-    //          it ALWAYS stores the final output image from bmp or slc files.
-    // tempImage : When a bmp is open, it's written in here, then every single pixel is assigned to "image"
-    //              That's how I managed to got it to work so don't question.
-    static BufferedImage image = new BufferedImage(5000, 5000, BufferedImage.TYPE_INT_ARGB),
-                         tempImage;
+    //          it ALWAYS stores the final output image from bmp or slc files. It is replaced by an image of the right
+    //          size for every document, see newDocument(). Until a document is opened, it is a tiny blank one.
+    static BufferedImage image = ImageBuffers.obtain(1, 1);
     static Graphics2D imageGraphic = (Graphics2D) image.getGraphics();
 
+    // documents : Every document opened or created gets the next number, the newest one has the biggest.
+    // shownDocument : The number of the document in the image object.
+    static long documents, shownDocument;
+
+    // overview : Whether the image object only holds an overview of a file too big to be opened. It stands for a
+    //            bigger image, so it can neither be painted on nor saved.
+    static boolean overview;
+
     static CanvasWindow canvasWindow;
-    static final int SLC_IMAGE = 0, BITMAP = 1;
+    // SLC_IMAGE : A version 1 .slc file, which any SLIC Viewer can open. SLC_V2_IMAGE : A version 2 .slc file.
+    static final int SLC_IMAGE = 0, BITMAP = 1, SLC_V2_IMAGE = 2;
     static Inspector inspector;
-    static JMenuItem saveBMPFileItem, saveSLCFileItem;
+    static JMenuItem openFileItem, saveBMPFileItem, saveSLCFileItem, saveSLC2FileItem;
 
     // These four integers will be used for image manipulation purposes.
     static int x1, x2, y1, y2, scrollX, scrollY, windowMouseX, windowMouseY;
@@ -47,6 +56,11 @@ public class Main {
     // The entrance function.
     public static void main(String[] args) throws Exception {
 
+        // Given any arguments, the app converts files on the command line instead of opening its windows.
+        if(args.length > 0) {
+            BatchTranscoder.main(args);
+            return;
+        }
 
         // Using Mac's own toolbar instead of in-window toolbar.
         if(System.getProperty("os.name").toLowerCase().contains("mac")){
@@ -56,6 +70,10 @@ public class Main {
 
         System.out.println(MANIPOFFSET);
 
+        // Documents are always opaque. Run with -Dslicviewer.rgb=true to hold them in images without alpha, which
+        // are drawn onto the screen without blending.
+        ImageBuffers.setAlpha(!Boolean.getBoolean("slicviewer.rgb"));
+
 
         // Making the app look sleek
         UIManager.setLookAndFeel("com.formdev.flatlaf.themes.FlatMacLightLaf");
@@ -75,13 +93,14 @@ public class Main {
 
         // Initiating the menu commands
         JMenuItem newFileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_NEW")),
-                openFileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_OPEN")),
                 showInspector = new JMenuItem(resourceBundle.getString("BAR_WINDOW_INSPECTOR")),
                 centerCanvas = new JMenuItem(resourceBundle.getString("BAR_WINDOW_VIEWER"));
+        openFileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_OPEN"));
         saveBMPFileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_BMP"));
         saveSLCFileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_SLC"));
+        saveSLC2FileItem = new JMenuItem(resourceBundle.getString("BAR_FILE_SLC2"));
         fileMenu.add(newFileItem); fileMenu.add(openFileItem);
-        fileMenu.add(saveSLCFileItem); fileMenu.add(saveBMPFileItem);
+        fileMenu.add(saveSLCFileItem); fileMenu.add(saveSLC2FileItem); fileMenu.add(saveBMPFileItem);
 
         windowMenu.add(showInspector); windowMenu.add(centerCanvas);
 
@@ -90,8 +109,8 @@ public class Main {
         openFileItem.addActionListener(e -> openFile());
         saveBMPFileItem.addActionListener(e -> saveFile(BITMAP));
         saveSLCFileItem.addActionListener(e -> saveFile(SLC_IMAGE));
-        saveBMPFileItem.setEnabled(false);
-        saveSLCFileItem.setEnabled(false);
+        saveSLC2FileItem.addActionListener(e -> saveFile(SLC_V2_IMAGE));
+        setSaveItemsEnabled(false);
 
         // If NOT running on a mac, add About command to the Window section
         if(!System.getProperty("os.name").toLowerCase().contains("mac")) {
@@ -136,6 +155,9 @@ public class Main {
 
             @Override
             public void mouseReleased(MouseEvent e) {
+                // The document cannot be painted on while it is being opened or saved, nor if it is an overview.
+                if(!canPaint()) return;
+
                 canvasWindow.repaint();
                 int tempX = mousePoint.x - canvasWindow.getX() + scrollX;
                 int tempY = mousePoint.y - canvasWindow.getY() + scrollY;
@@ -157,12 +179,17 @@ public class Main {
                         else imageGraphic.drawOval(tempX < x2 ? tempX : x2, tempY < y2 ? tempY - MANIPOFFSET - 3 : y2 - 3, CanvasWindow.tempWidth, CanvasWindow.tempHeight);
                         break;
                 }
+
+                // The canvas does not see what is painted onto the image by itself.
+                canvasWindow.repaintImage(0, 0, SLICCodec.colCount, SLICCodec.rowCount);
             }
         });
 
         CanvasWindow.scrollPane.addMouseMotionListener(new MouseAdapter() {
             @Override
             public void mouseDragged(MouseEvent e) {
+                if(!canPaint()) return;
+
                 switch(inspector.mode) {
                     case Inspector.PEN:
                         x1 = x2;
@@ -170,7 +197,11 @@ public class Main {
 
                         getNewCursorPosition();
                         imageGraphic.drawLine(x1, y1, x2, y2);
-                        canvasWindow.repaint();
+
+                        // Only the blocks of the canvas under the new piece of line are painted again.
+                        int thickness = Inspector.thicknessControl.getValue();
+                        canvasWindow.repaintImage(Math.min(x1, x2) - thickness, Math.min(y1, y2) - thickness,
+                                Math.abs(x2 - x1) + thickness * 2 + 1, Math.abs(y2 - y1) + thickness * 2 + 1);
                         break;
 
                     // Unlike PEN mode, since you need to preview the drawn object without actually applying on image,
@@ -246,52 +277,50 @@ public class Main {
             // If user clicks cancel, the function will not try to open a null file.
             if(FileOperations.path != null) {
 
-                inspector.waitOpening(FileOperations.filename); // foolproofing
-                canvasWindow.setVisible(false);
-
-                // Clearing the canvas
-                image.getGraphics().fillRect(0, 0, 5000, 5000);
-
-                if (FileOperations.filename.endsWith("slc")) { // The opened file is of SLIC format.
+                if (FileOperations.filename.endsWith("slc") || FileOperations.filename.endsWith("bmp")) {
 
-                    // Decompressing the .slc file and assign the output into the image object.
-                    SLICCodec.readFile(FileOperations.path, image);
+                    // The file is read in the background, the windows stay responsive and more files can be opened
+                    // in the meantime.
+                    new OpenTask(FileOperations.path, FileOperations.filename).start();
+                    return;
+                }
 
-                    // Sending the output image to canvas window
-                    canvasWindow.showImage(image);
+                // Clearing the canvas
+                newDocument(SLICCodec.colCount, SLICCodec.rowCount);
+                canvasWindow.showImage(image);
 
-                } else if (FileOperations.filename.endsWith("bmp")) { // The opened file is of BITMAP format.
+                finishOpening(FileOperations.filename);
+            }
+        } catch (Exception e) { throw new RuntimeException(e); }
+    }
 
-                    // Reading the file into tempImage, because I didn't want to re-instantiate the image object
-                    // over and over again since it's 5000x5000! But temp image is of exact size of the bmp.
-                    tempImage = ImageIO.read(new File(FileOperations.path.toString()));
+    private static void setSaveItemsEnabled(boolean enabled) {
+        saveBMPFileItem.setEnabled(enabled); saveSLCFileItem.setEnabled(enabled); saveSLC2FileItem.setEnabled(enabled);
+    }
 
-                    // We still need the width and height information for the app to function properly.
-                    // Luckily the rowcount and colcount are mutable. But it is unsafe to use it in normal circumstances.
-                    // But since I'm the one who wrote it, I know when to assign and when not to reassign the values.
-                    SLICCodec.colCount = (short) tempImage.getWidth();
-                    SLICCodec.rowCount = (short) tempImage.getHeight();
+    // Whether the image object can be painted on.
+    static boolean canPaint() {
+        return !overview && !FileTask.isUsing(image);
+    }
 
-                    for (int r = 0; r < SLICCodec.rowCount; r++)
-                        for (int c = 0; c < SLICCodec.colCount; c++)
-                            image.setRGB(c, r, tempImage.getRGB(c, r));
+    // Once the image is in place, the inspector and the menu are brought back to life.
+    private static void finishOpening(String filename) {
+        // Assigning the width and height.
+        inspector.setInformation(filename, SLICCodec.colCount, SLICCodec.rowCount);
+        openFileItem.setEnabled(true);
 
-                    // System.out.print(SLICCodec.colCount + " " + SLICCodec.rowCount);
-                    canvasWindow.showImage(image);
-                }
-                // Assigning the width and height.
-                inspector.setInformation(FileOperations.filename, SLICCodec.colCount, SLICCodec.rowCount);
-
-                if(FileOperations.filename.endsWith("bmp") || FileOperations.filename.endsWith("slc"))
-                    { saveBMPFileItem.setEnabled(true); saveSLCFileItem.setEnabled(true); }
-                else {
-                    inspector.error();
-                    saveBMPFileItem.setEnabled(false); saveSLCFileItem.setEnabled(false);
-                }
+        // Saving an overview would write the smaller image as if it were the file.
+        if(overview) {
+            inspector.showOverview();
+            setSaveItemsEnabled(false);
+        }
+        else if(filename.endsWith("bmp") || filename.endsWith("slc")) setSaveItemsEnabled(true);
+        else {
+            inspector.error();
+            setSaveItemsEnabled(false);
+        }
 
-                canvasWindow.setVisible(true);
-            }
-        } catch (Exception e) { throw new RuntimeException(e); }
+        canvasWindow.setVisible(true);
     }
 
     // Calculating the cursor position relative to the canvas and assigning them to x2 and y2 variables.
@@ -304,6 +333,8 @@ public class Main {
     }
 
     public static void saveFile(int mode) {
+        if(overview) return;
+
         try {
             FileOperations.loadFileTo(JFileChooser.DIRECTORIES_ONLY);
 
@@ -311,42 +342,93 @@ public class Main {
             //System.out.println("Path: " + FileOperations.path +"\nName: " + FileOperations.filename);
 
             // Deciding on the extension
-            String ext = mode == BITMAP ? ".bmp" : mode == SLC_IMAGE ? ".slc" : "";
+            String ext = mode == BITMAP ? ".bmp" : mode == SLC_IMAGE || mode == SLC_V2_IMAGE ? ".slc" : "";
 
             // If user clicks cancel, the function will not try to save to a null file.
             if(FileOperations.filename != null && FileOperations.path != null) {
 
-                inspector.waitCompressing(); // foolproofing
-
-                canvasWindow.setVisible(false);
-
                 String destination = FileOperations.path + ext; // Target path
 
                 if(Files.exists(Paths.get(destination)))
                     JOptionPane.showMessageDialog(null, resourceBundle.getString("FILE_ERR"));
 
-                else if(mode == BITMAP) { // Saving as a bitmap image
+                else if(mode == BITMAP || mode == SLC_IMAGE || mode == SLC_V2_IMAGE) {
+                    inspector.waitCompressing(); // foolproofing
 
-                    // Reading the file into tempImage, because I didn't want to re-instantiate the image object
-                    // over and over again since it's 5000x5000! But temp image is of exact size of the bmp.
-                    tempImage = new BufferedImage(SLICCodec.colCount, SLICCodec.rowCount, BufferedImage.TYPE_INT_RGB);
+                    // Saving as a bitmap image, or compressing the image .slc and writing to file, in the background.
+                    new SaveTask(Paths.get(destination), FileOperations.filename, mode).start();
+                }
+            }
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
 
-                    for (int r = 0; r < SLICCodec.rowCount; r++)
-                        for (int c = 0; c < SLICCodec.colCount; c++)
-                            tempImage.setRGB(c, r, image.getRGB(c, r));
+    // Reads the bitmap file into the image object and takes its size as the size of the document.
+    static void readBitmap(File source) throws IOException {
+        OpenTask bitmap = new OpenTask(source.toPath(), source.getName());
+        bitmap.readBitmap();
+        setDocument(bitmap.number, bitmap.image(), bitmap.width, bitmap.height);
+    }
 
-                    // Writing to file
-                    ImageIO.write(tempImage, "bmp", new File(destination));
+    // Writes the document part of the image object into a bitmap file.
+    static void writeBitmap(File destination) throws IOException {
+        writeBitmap(destination, image, SLICCodec.colCount, SLICCodec.rowCount);
+    }
 
-                } else if(mode == SLC_IMAGE) SLICCodec.saveToFile(image, Paths.get(destination));
-                                            // Compressing the image .slc and writing to file.
+    // Writes the top left width x height part of the image into a bitmap file, straight from its pixels.
+    static void writeBitmap(File destination, BufferedImage source, int width, int height) throws IOException {
+        try(BitmapWriter bitmap = new BitmapWriter(destination.toPath(), width, height)) {
+            bitmap.write(ImagePixels.of(source, width, height));
+            bitmap.commit();
+        }
+    }
 
-                inspector.setInformation(FileOperations.filename, SLICCodec.colCount, SLICCodec.rowCount);
-                canvasWindow.setTitle(FileOperations.filename + " " + SLICCodec.colCount + "x" + SLICCodec.rowCount + " ( px.)");
+    // Makes the image a clear one of the right size for a document of the given size, with room for the border
+    // around it, and takes the size as the size of the document. The image of the document before is given back to
+    // be reused.
+    static void newDocument(int width, int height) {
+        setDocument(++documents, blankImage(width, height), width, height);
+    }
 
-                canvasWindow.setVisible(true);
-            }
-        } catch (IOException e) { throw new RuntimeException(e); }
+    // Whether there is room for the image of a document of the given size, and its border.
+    static boolean documentFits(int width, int height) {
+        return ImageBuffers.fits(width + 2, height + 2);
+    }
+
+    // Returns a clear image of the right size for a document of the given size, with room for the border around it.
+    static BufferedImage blankImage(int width, int height) {
+        BufferedImage blank = ImageBuffers.obtain(width + 2, height + 2);
+
+        // Only the part the document and its border use is cleared, a reused image may still hold an older one.
+        Graphics clear = blank.getGraphics();
+        clear.setColor(Color.white);
+        clear.fillRect(0, 0, width + 2, height + 2);
+        clear.dispose();
+        return blank;
+    }
+
+    // Makes the given image the image object, holding the document with the given number and size. The image of the
+    // document before is given back to be reused, and files still being opened for an older document are not
+    // needed anymore.
+    static void setDocument(long number, BufferedImage document, int width, int height) {
+        BufferedImage old = image;
+        shownDocument = number;
+        image = document;
+        overview = false;
+
+        imageGraphic.dispose();
+        imageGraphic = (Graphics2D) image.getGraphics();
+
+        SLICCodec.colCount = width;
+        SLICCodec.rowCount = height;
+
+        releaseImage(old);
+        for(FileTask task : FileTask.runningTasks())
+            if(task instanceof OpenTask && ((OpenTask) task).number < number) task.cancelTask();
+    }
+
+    // Gives the image back to be reused, unless it holds the document or a file task still uses it.
+    static void releaseImage(BufferedImage released) {
+        if(released != null && released != image && !FileTask.isUsing(released)) ImageBuffers.release(released);
     }
 
     public static void createFile() {
@@ -354,12 +436,13 @@ public class Main {
         newFile.setVisible(true);
 
         if(newFile.accepted) {
-            SLICCodec.rowCount = (short) newFile.height;
-            SLICCodec.colCount = (short) newFile.width;
-
-            // Clearing the canvas
-            image.getGraphics().fillRect(0, 0, 5000, 5000);
+            if(!documentFits(newFile.width, newFile.height)) {
+                JOptionPane.showMessageDialog(null, resourceBundle.getString("DOC_TOO_BIG"));
+                return;
+            }
 
+            // A clear image of the size of the new document
+            newDocument(newFile.width, newFile.height);
 
             canvasWindow.showImage(image);
             canvasWindow.setTitle(StringBundle.getInstance().getString("CREATE_FILE_TITLE")
@@ -368,6 +451,198 @@ public class Main {
             inspector.setInformation(StringBundle.getInstance().getString("CREATE_FILE_TITLE"), newFile.width, newFile.height);
         }
     }
-    
 
-}
\ No newline at end of file
+    // Opens a .slc or .bmp file in the background. A SLIC file shows up as soon as its header is read, and its rows
+    // as soon as they are decompressed, a bitmap shows up once it is read. The newest file asked for is the one on
+    // the canvas, a file done after a newer one has shown up is dropped.
+    // A SLIC file too big for the memory is opened as an overview, 2, 4 or 8 times smaller each way, a bitmap too
+    // big for it is refused.
+    private static class OpenTask extends FileTask implements DecodeListener {
+
+        final long number = ++documents;
+        private final Path path;
+        private int width, height, factor = 1;
+        private volatile boolean shown;
+        private volatile BandLoader loader;
+
+        OpenTask(Path path, String filename) {
+            super(filename, false);
+            this.path = path;
+        }
+
+        @Override
+        protected void work() throws IOException {
+            if(getName().endsWith("bmp")) {
+                readBitmap();
+                return;
+            }
+
+            // A file opened a little while ago is only copied out of the cache, it shows up once it is copied.
+            ImageCache.Key key = ImageCache.keyOf(path);
+            ImageCache.CachedImage cached = ImageCache.getInstance().get(key);
+            if(cached != null && documentFits(cached.getWidth(), cached.getHeight())) {
+                load(cached.getWidth(), cached.getHeight());
+                cached.copyTo(image());
+                return;
+            }
+
+            // Only the header is read first, to get an image of the right size ready for the decoder.
+            SLICDecoder decoder = new SLICDecoder();
+            decoder.readHeader(path);
+            decoder.setProgressListener(this);
+
+            if(!documentFits(decoder.getWidth(), decoder.getHeight())) {
+                readOverview(decoder);
+                return;
+            }
+            load(decoder.getWidth(), decoder.getHeight());
+
+            // The bands of a version 2 file can be read on their own, the ones scrolled to are read ahead of the rest.
+            if(height > decoder.getBandHeight())
+                loader = new BandLoader(path, image(), width, height, decoder.getBandHeight(),
+                        (top, bottom) -> { if(shown) canvasWindow.repaintRows(top, bottom); });
+
+            SwingUtilities.invokeLater(this::show);
+            try {
+                decoder.decode(path, image(), this);
+            } finally {
+                // Nothing paints onto the image after this, it can be painted on by the user.
+                if(loader != null) loader.close();
+            }
+
+            // The document cannot be painted on yet, the cache gets the pixels just as they are in the file.
+            ImageCache.getInstance().put(key, image(), width, height);
+        }
+
+        // Paints the file onto an image as many times smaller as it takes to fit into the memory. The overview shows
+        // up once it is done.
+        private void readOverview(SLICDecoder decoder) throws IOException {
+            int fullWidth = decoder.getWidth(), fullHeight = decoder.getHeight();
+
+            for(factor = 2; factor <= SLICDecoder.MAX_SCALE_FACTOR; factor *= 2) {
+                int scaledWidth = (int) ((fullWidth + factor - 1L) / factor);
+                int scaledHeight = (int) ((fullHeight + factor - 1L) / factor);
+                if(!documentFits(scaledWidth, scaledHeight)) continue;
+
+                load(scaledWidth, scaledHeight);
+                decoder.decodeScaled(path, factor, SLICDecoder.BOX, image());
+                return;
+            }
+
+            throw new IOException(fullWidth + "x" + fullHeight + ": " + resourceBundle.getString("DOC_TOO_BIG"));
+        }
+
+        // Reads the bitmap into an image of its own.
+        void readBitmap() throws IOException {
+            // Uncompressed bitmaps are read straight into the pixels of the image, a band of rows at a time.
+            try(BitmapReader bitmap = BitmapReader.open(path)) {
+                if(bitmap != null) {
+                    if(!documentFits(bitmap.getWidth(), bitmap.getHeight()))
+                        throw new IOException(bitmap.getWidth() + "x" + bitmap.getHeight() + ": "
+                                + resourceBundle.getString("DOC_TOO_BIG"));
+                    load(bitmap.getWidth(), bitmap.getHeight());
+
+                    ImagePixels pixels = ImagePixels.of(image(), width, height);
+                    bitmap.read(0, height, pixels.data, pixels.index(0, 0), pixels.stride);
+                    pixels.commit();
+                    return;
+                }
+            }
+
+            // Any other kind of bitmap is read as a whole by ImageIO first, the image can only be made once the size
+            // of the bmp is known. The pixels are then moved a row at a time, not one by one.
+            BufferedImage whole = ImageIO.read(path.toFile());
+            if(whole == null) throw new IOException("Not a readable bitmap.");
+            checkCancelled();
+
+            load(whole.getWidth(), whole.getHeight());
+            PixelTransfer.copy(whole, image(), width, height);
+        }
+
+        // Takes a clear image for a document of the given size.
+        private void load(int width, int height) {
+            this.width = width;
+            this.height = height;
+            useImage(blankImage(width, height));
+        }
+
+        // Puts the document onto the canvas, unless a newer one is already there.
+        private void show() {
+            if(number < shownDocument || isCancelRequested()) return;
+
+            setDocument(number, image(), width, height);
+            overview = factor > 1;
+            shown = true;
+
+            canvasWindow.showImage(image);
+            canvasWindow.setRowLoader(loader);
+            canvasWindow.setTitle(getName() + " " + width + "x" + height + " ( px.)"
+                    + (factor > 1 ? " " + resourceBundle.getString("DOC_OVERVIEW") + " 1/" + factor : ""));
+            inspector.waitOpening(getName());
+            setSaveItemsEnabled(false);
+        }
+
+        @Override
+        public void rowsDecoded(int top, int bottom) {
+            if(loader != null) loader.rowsDecoded(top, bottom);
+            if(shown) canvasWindow.repaintRows(top, bottom);
+        }
+
+        @Override
+        protected void finished(Throwable failure) {
+            if(failure == null && !shown) show();
+
+            // A file that never showed up, or has been replaced by a newer one, is simply dropped.
+            if(!shown || image() != image) return;
+
+            canvasWindow.setRowLoader(null);
+            canvasWindow.repaint();
+            if(failure == null) finishOpening(getName());
+            else {
+                // The part read so far stays on the canvas, but it cannot be saved as the file.
+                String status = failure instanceof CancellationException ? "TASK_CANCELLED" : "TASK_FAILED";
+                canvasWindow.setTitle(resourceBundle.getString(status) + " " + getName());
+                openFileItem.setEnabled(true);
+            }
+        }
+    }
+
+    // Saves the document into a .slc or .bmp file in the background. The document cannot be painted on until the
+    // file is written.
+    private static class SaveTask extends FileTask {
+
+        private final Path destination;
+        private final int mode, width, height;
+
+        SaveTask(Path destination, String filename, int mode) {
+            super(filename, true);
+            this.destination = destination;
+            this.mode = mode;
+            this.width = SLICCodec.colCount;
+            this.height = SLICCodec.rowCount;
+            useImage(image);
+        }
+
+        @Override
+        protected void work() throws IOException {
+            if(mode == BITMAP) writeBitmap(destination.toFile(), image(), width, height);
+            else {
+                // Version 1 files can be opened by every SLIC Viewer, version 2 is only written when asked for, or
+                // when the image is too big for version 1.
+                SLICEncoder encoder = new SLICEncoder();
+                if(mode == SLC_IMAGE && SLICCodec.fitsVersion1(width, height)) encoder.setVersion(SLICCodec.VERSION_1);
+                encoder.setProgressListener(this);
+                encoder.encode(image(), width, height, destination);
+            }
+        }
+
+        @Override
+        protected void finished(Throwable failure) {
+            // Another document may have been opened in the meantime, it is left as it is.
+            if(image() != image) return;
+
+            inspector.setInformation(getName(), width, height);
+            if(failure == null) canvasWindow.setTitle(getName() + " " + width + "x" + height + " ( px.)");
+        }
+    }
+}
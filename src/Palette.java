@@ -0,0 +1,169 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.util.Arrays;
+
+/**
+ * The colors of an image that has no more than <strong>MAX_COLORS</strong> of them, such as a screenshot or a
+ * drawing made with the preset colors of the Inspector. The tiles of such an image are stored with the index of their
+ * color in the palette instead of the color itself.
+ *
+ * <p>
+ *  The colors are found with a small open addressing hash set of <strong>int</strong>s, so that no color is ever
+ *  boxed. Neighbouring pixels mostly have the same color, and only the pixels differing from the one before them are
+ *  looked up.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class Palette {
+
+    /** The most colors a palette can hold, and the most of them that fit into 4 bits. */
+    public static final int MAX_COLORS = 256, MAX_SMALL_COLORS = 16;
+
+    // Four times as many slots as colors keeps the probe sequences short.
+    private static final int SLOTS = MAX_COLORS * 4;
+
+    // Marks an empty slot, it never equals a 24 bit color.
+    private static final int EMPTY = -1;
+
+    private final int[] keys = new int[SLOTS], indices = new int[SLOTS];
+    private final int[] colors = new int[MAX_COLORS];
+    private int size;
+
+    private Palette() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Collects the colors of an image, a band of rows at a time.
+     * @param rows The rows of the image
+     * @param height Height of the image
+     * @param bandHeight How many rows are asked for at once
+     * @return The palette of the image, or null if it has more than <strong>MAX_COLORS</strong> colors
+     * @throws IOException If the rows cannot be read
+     */
+    public static Palette of(RowSource rows, int height, int bandHeight) throws IOException {
+        Palette palette = new Palette();
+        int previous = EMPTY;
+
+        for(int top = 0; top < height; top += bandHeight) {
+            int bottom = Math.min(height, top + bandHeight);
+            ImagePixels pixels = rows.rows(top, bottom);
+
+            for(int row = top; row < bottom; row++) {
+                for(int i = pixels.index(row, 0), end = i + pixels.width; i < end; i++) {
+                    int color = pixels.data[i] & SLICCodec.RGB_MASK;
+                    if(color == previous) continue;
+
+                    previous = color;
+                    if(palette.add(color) < 0) return null;
+                }
+            }
+        }
+
+        return palette;
+    }
+
+    // Returns the index of the color, adding it if it is new, or -1 if the palette is full.
+    private int add(int color) {
+        int slot = slot(color);
+        while(keys[slot] != EMPTY) {
+            if(keys[slot] == color) return indices[slot];
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+
+        if(size == MAX_COLORS) return -1;
+        keys[slot] = color;
+        indices[slot] = size;
+        colors[size] = color;
+        return size++;
+    }
+
+    // Fibonacci hashing, spreads colors differing only in their low bits all over the slots.
+    private static int slot(int color) {
+        return (color * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(SLOTS));
+    }
+
+    /** @return The number of colors */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Index of a color
+     * @return The 24 bit color
+     */
+    public int color(int index) {
+        return colors[index];
+    }
+
+    /**
+     * @param color A 24 bit color of the palette
+     * @return Its index
+     */
+    public int indexOf(int color) {
+        int slot = slot(color);
+        while(keys[slot] != color) slot = (slot + 1) & (SLOTS - 1);
+        return indices[slot];
+    }
+
+    /** @return true if an index fits into 4 bits */
+    public boolean isSmall() {
+        return size <= MAX_SMALL_COLORS;
+    }
+
+    /**
+     * Stores the tiles of a band with indices instead of colors, in 2 bytes a tile, or 3 bytes every two tiles if the
+     * palette is small. The varints of extended tiles are kept, right after the tile or the pair of tiles.
+     * @param tiles The tiles of the band, stored as in version 1 or as extended tiles
+     * @return The indexed tiles
+     */
+    public BandBuffer pack(BandBuffer tiles) {
+        BandBuffer output = new BandBuffer(tiles.size() / (isSmall() ? 2 : 1));
+
+        for(int position = 0; position < tiles.size(); ) {
+            int first = indexed(tiles, position);
+            position += 4;
+            int firstExtension = position;
+            if(SLICCodec.hasExtension(first)) position += BandBuffer.varintSize(tiles.getVarint(position));
+
+            if(!isSmall()) {
+                output.putByte(first >> 8);
+                output.putByte(first);
+                putExtension(output, tiles, first, firstExtension);
+                continue;
+            }
+
+            // IIIIMMSS SSSSIIII MMSSSSSS, an odd tile out is followed by an empty one the decoder never gets to.
+            int second = 0, secondExtension = position;
+            if(position < tiles.size()) {
+                second = indexed(tiles, position);
+                position += 4;
+                secondExtension = position;
+                if(SLICCodec.hasExtension(second)) position += BandBuffer.varintSize(tiles.getVarint(position));
+            }
+
+            output.putByte(first >> 4);
+            output.putByte(first << 4 | second >> 8);
+            output.putByte(second);
+            putExtension(output, tiles, first, firstExtension);
+            putExtension(output, tiles, second, secondExtension);
+        }
+
+        return output;
+    }
+
+    // The tile at the given position with the index of its color in place of the color, IIIIIIII MMSSSSSS. A REPEAT
+    // has no color, its index is 0.
+    private int indexed(BandBuffer tiles, int position) {
+        int tile = tiles.getInt(position);
+        return SLICCodec.isRepeat(tile) ? tile & 0xFF : indexOf(tile >>> 8) << 8 | (tile & 0xFF);
+    }
+
+    // Copies the varint of an extended tile, if it has one.
+    private static void putExtension(BandBuffer output, BandBuffer tiles, int tile, int position) {
+        if(SLICCodec.hasExtension(tile)) output.putVarint(tiles.getVarint(position));
+    }
+}
@@ -0,0 +1,177 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+/**
+ * Moves pixels between images and <strong>int</strong> arrays a whole row at a time, instead of calling
+ * <strong>getRGB()</strong> and <strong>setRGB()</strong> for every single pixel, which goes through the color model
+ * of the image every time.
+ *
+ * <p>
+ *  The two kinds of images the app meets the most have paths of their own: <strong>TYPE_INT_RGB</strong> and
+ *  <strong>TYPE_INT_ARGB</strong> images, which hold their pixels just like the arrays do, and the
+ *  <strong>TYPE_3BYTE_BGR</strong> images ImageIO makes out of 24 bit bitmaps, whose bytes are put together
+ *  into pixels right here. Any other image is still moved a row at a time through its color model.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code PixelTransfer.copy(ImageIO.read(file), image, width, height);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class PixelTransfer {
+
+    private static final int OPAQUE = 0xFF000000;
+
+    private PixelTransfer() {}
+
+    /**
+     * Copies the top left <strong>width x height</strong> area of one image onto the same area of another.
+     * @param source The image the pixels are taken from
+     * @param target The image the pixels are copied onto
+     * @param width Width of the area
+     * @param height Height of the area
+     */
+    public static void copy(BufferedImage source, BufferedImage target, int width, int height) {
+        ImagePixels pixels = ImagePixels.of(target, width, height);
+        read(source, width, height, pixels.data, pixels.index(0, 0), pixels.stride);
+        pixels.commit();
+    }
+
+    /**
+     * Copies the top left <strong>width x height</strong> area of the image into an array.
+     * @param source The image
+     * @param width Width of the area
+     * @param height Height of the area
+     * @param target The array the pixels are copied into, as <strong>0xAARRGGBB</strong>
+     * @param offset Index of the top left pixel in the array
+     * @param stride Distance between two vertically adjacent pixels in the array
+     */
+    public static void read(BufferedImage source, int width, int height, int[] target, int offset, int stride) {
+        switch(source.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB: {
+                ImagePixels pixels = ImagePixels.of(source, width, height);
+                boolean alpha = source.getType() == BufferedImage.TYPE_INT_ARGB;
+
+                for(int row = 0; row < height; row++) {
+                    int from = pixels.index(row, 0), to = offset + row * stride;
+                    if(alpha) System.arraycopy(pixels.data, from, target, to, width);
+                    else for(int col = 0; col < width; col++) target[to + col] = pixels.data[from + col] | OPAQUE;
+                }
+                return;
+            }
+
+            case BufferedImage.TYPE_3BYTE_BGR:
+                if(readBytes(source, width, height, target, offset, stride)) return;
+        }
+
+        for(int row = 0; row < height; row++) source.getRGB(0, row, width, 1, target, offset + row * stride, stride);
+    }
+
+    /**
+     * Copies pixels from an array onto the top left <strong>width x height</strong> area of the image.
+     * @param source The array holding the pixels, as <strong>0xAARRGGBB</strong>
+     * @param offset Index of the top left pixel in the array
+     * @param stride Distance between two vertically adjacent pixels in the array
+     * @param target The image
+     * @param width Width of the area
+     * @param height Height of the area
+     */
+    public static void write(int[] source, int offset, int stride, BufferedImage target, int width, int height) {
+        switch(target.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB: {
+                // A TYPE_INT_RGB image ignores the alpha bits, the pixels can be copied as they are.
+                ImagePixels pixels = ImagePixels.of(target, width, height);
+                for(int row = 0; row < height; row++)
+                    System.arraycopy(source, offset + row * stride, pixels.data, pixels.index(row, 0), width);
+                return;
+            }
+
+            case BufferedImage.TYPE_3BYTE_BGR:
+                if(writeBytes(source, offset, stride, target, width, height)) return;
+        }
+
+        for(int row = 0; row < height; row++) target.setRGB(0, row, width, 1, source, offset + row * stride, stride);
+    }
+
+    // Puts the bytes of a TYPE_3BYTE_BGR image together into pixels. Returns false if the image does not keep its
+    // bytes the usual way.
+    private static boolean readBytes(BufferedImage source, int width, int height, int[] target, int offset, int stride) {
+        ByteLayout layout = ByteLayout.of(source.getRaster());
+        if(layout == null) return false;
+
+        byte[] data = layout.data;
+        for(int row = 0; row < height; row++) {
+            int from = layout.index(row), to = offset + row * stride;
+
+            for(int col = 0; col < width; col++, from += 3)
+                target[to + col] = OPAQUE | (data[from + layout.red] & 0xFF) << 16
+                                 | (data[from + layout.green] & 0xFF) << 8 | (data[from + layout.blue] & 0xFF);
+        }
+        return true;
+    }
+
+    // Takes the pixels apart into the bytes of a TYPE_3BYTE_BGR image. Returns false if the image does not keep its
+    // bytes the usual way.
+    private static boolean writeBytes(int[] source, int offset, int stride, BufferedImage target, int width, int height) {
+        ByteLayout layout = ByteLayout.of(target.getRaster());
+        if(layout == null) return false;
+
+        byte[] data = layout.data;
+        for(int row = 0; row < height; row++) {
+            int from = offset + row * stride, to = layout.index(row);
+
+            for(int col = 0; col < width; col++, to += 3) {
+                int pixel = source[from + col];
+                data[to + layout.red] = (byte) (pixel >> 16);
+                data[to + layout.green] = (byte) (pixel >> 8);
+                data[to + layout.blue] = (byte) pixel;
+            }
+        }
+        return true;
+    }
+
+    // Where the bytes of a 3 byte a pixel raster are, the red, green and blue byte of the pixel at (row, col) are at
+    // index(row) + col * 3 + red, green and blue.
+    private static class ByteLayout {
+
+        final byte[] data;
+        final int offset, stride, red, green, blue;
+
+        private ByteLayout(byte[] data, int offset, int stride, int[] bandOffsets) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.red = bandOffsets[0];
+            this.green = bandOffsets[1];
+            this.blue = bandOffsets[2];
+        }
+
+        static ByteLayout of(WritableRaster raster) {
+            if(!(raster.getDataBuffer() instanceof DataBufferByte) || !(raster.getSampleModel() instanceof ComponentSampleModel))
+                return null;
+
+            ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            if(model.getPixelStride() != 3 || model.getNumBands() != 3 || buffer.getNumBanks() != 1) return null;
+
+            // Sub images share the buffer of their parent, the translation tells where they start in it.
+            int offset = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * model.getScanlineStride()
+                    - raster.getSampleModelTranslateX() * 3;
+
+            return new ByteLayout(buffer.getData(), offset, model.getScanlineStride(), model.getBandOffsets());
+        }
+
+        int index(int row) {
+            return offset + row * stride;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Written by İ.K. Bilir (Abes400)
+
+/**
+ * Hears about the progress of a <strong>SLICEncoder</strong> or a <strong>SLICDecoder</strong>.
+ *
+ * <p>
+ *  The codec does not call the listener for every tile, it is only told every so often, no more than once every
+ *  <strong>CodecProgress.REPORT_INTERVAL_MILLIS</strong>. A listener can stop the work by calling
+ *  <strong>cancel()</strong> on the progress it is given.
+ * </p>
+ * <p>
+ *  <strong>NOTICE</strong> The methods are called on the threads doing the work, not on the Swing event dispatch
+ *  thread.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code encoder.setProgressListener(progress -> System.out.println(progress.percent() + "%"));}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface ProgressListener {
+
+    /**
+     * Called once before any tile is coded. Keep the progress to be able to cancel the work later on.
+     * @param progress The progress of the image being coded
+     */
+    default void started(CodecProgress progress) {}
+
+    /**
+     * Called every so often while the image is being coded.
+     * @param progress The progress of the image being coded
+     */
+    void progressMade(CodecProgress progress);
+
+    /**
+     * Called once the image is done, or once the work has stopped because it failed or has been cancelled.
+     * @param progress The progress of the image, with the final numbers
+     */
+    default void finished(CodecProgress progress) {}
+}
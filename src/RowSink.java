@@ -0,0 +1,23 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+/**
+ * Takes the pixels of an image from the decoder a band of rows at a time, as soon as the band is painted. A
+ * <strong>LargeImage</strong> writes them into its scratch file, and a decoded area of an image keeps just the part of
+ * them it covers, so that only the bands in progress are ever in memory.
+ *
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface RowSink {
+
+    /**
+     * Takes the painted rows [top, bottom). May be called by several threads at once, for different rows.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @param rows A view holding those rows, reached with their own row numbers
+     * @throws IOException If the rows cannot be stored
+     */
+    void setRows(int top, int bottom, ImagePixels rows) throws IOException;
+}
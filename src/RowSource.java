@@ -0,0 +1,23 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+/**
+ * Hands the pixels of an image over to the encoder a band of rows at a time. An image in memory simply hands out a
+ * view on all of its pixels every time, while a <strong>LargeImage</strong> reads just the rows asked for, so that
+ * only the bands in progress are ever in memory.
+ *
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface RowSource {
+
+    /**
+     * Returns the pixels of the rows [top, bottom). May be called by several threads at once.
+     * @param top The first row
+     * @param bottom The row below the last one
+     * @return A view holding at least those rows, reached with their own row numbers
+     * @throws IOException If the rows cannot be read
+     */
+    ImagePixels rows(int top, int bottom) throws IOException;
+}
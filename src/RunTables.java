@@ -0,0 +1,144 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputed answers to the three questions the encoder asks at every tile: starting from a pixel, how long is the
+ * homogeneous horizontal line, how long is the homogeneous vertical line and how big is the homogeneous square?
+ *
+ * <p>
+ *  The tables are filled with dynamic programming, from the bottom right corner towards the top left one, so every
+ *  pixel is looked at a constant number of times no matter how big the tiles get. All lengths are capped at the
+ *  longest length a tile can hold.
+ * </p>
+ * <p>
+ *  Only a window of rows is kept in memory. The encoder only ever asks about the cursor row, which only moves down,
+ *  so the window simply slides down with it. A window also needs the rows below it, up to the longest tile length,
+ *  to get its vertical lines and squares right, but never more than another window of rows.
+ * </p>
+ * <p>
+ *  Tables are pooled, so call <strong>obtain()</strong> to get one and <strong>release()</strong> once the image is
+ *  done.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class RunTables {
+
+    // How many rows a window answers for.
+    static final int WINDOW_ROWS = 256;
+
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors();
+    private static final ConcurrentLinkedQueue<RunTables> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    // horizontal : length of the homogeneous line going right from the pixel
+    // vertical   : length of the homogeneous line going down from the pixel
+    // square     : side of the biggest homogeneous square whose top left corner is the pixel
+    // All of them are indexed with (row - windowTop) * width + col
+    private int[] horizontal = new int[0], vertical = new int[0], square = new int[0];
+
+    private ImagePixels pixels;
+    private int width, bottom, maxLength;
+
+    // The rows [windowTop, windowEnd) can be asked about at the moment.
+    private int windowTop, windowEnd;
+
+    private RunTables() {}
+
+    /**
+     * Returns tables for the rows [top, bottom) of the given pixels, reusing pooled ones if there is any.
+     * @param pixels The pixels of the image to be compressed
+     * @param top The first row the tables will be asked about
+     * @param bottom The row below the last one. No line or square reaches this row.
+     * @param maxLength The longest line or biggest square a tile can hold
+     * @return Tables whose window starts at <strong>top</strong>
+     */
+    public static RunTables obtain(ImagePixels pixels, int top, int bottom, int maxLength) {
+        RunTables tables = pool.poll();
+        if(tables == null) tables = new RunTables();
+        else pooled.decrementAndGet();
+
+        tables.pixels = pixels;
+        tables.width = pixels.width;
+        tables.bottom = bottom;
+        tables.maxLength = maxLength;
+        tables.fill(top);
+        return tables;
+    }
+
+    /**
+     * Gives the tables back to the pool. They must not be used after calling this.
+     */
+    public void release() {
+        pixels = null;
+        if(pooled.incrementAndGet() <= MAX_POOLED) pool.offer(this);
+        else pooled.decrementAndGet();
+    }
+
+    /**
+     * Makes sure the given row can be asked about. Rows above it cannot be asked about afterwards.
+     * @param row The row the encoder's cursor is on
+     */
+    public void moveTo(int row) {
+        if(row >= windowEnd) fill(row);
+    }
+
+    /** @return Length of the homogeneous horizontal line going right from the pixel */
+    public int horizontal(int row, int col) { return horizontal[(row - windowTop) * width + col]; }
+
+    /** @return Length of the homogeneous vertical line going down from the pixel */
+    public int vertical(int row, int col) { return vertical[(row - windowTop) * width + col]; }
+
+    /** @return Side of the biggest homogeneous square whose top left corner is the pixel */
+    public int square(int row, int col) { return square[(row - windowTop) * width + col]; }
+
+    // Computes the window starting at the given row.
+    private void fill(int top) {
+        windowTop = top;
+        windowEnd = Math.min(bottom, top + WINDOW_ROWS);
+        if(width == 0) return;
+
+        // Vertical lines and squares starting in the window can reach maxLength - 1 rows below it. Long ones are
+        // only followed for another window of rows, so that the tables stay small; they are cut there.
+        int computedEnd = Math.min(bottom, windowEnd + Math.min(maxLength - 1, WINDOW_ROWS));
+        int rows = computedEnd - top, size = rows * width;
+
+        if(vertical.length < size) {
+            vertical = new int[size];
+            square = new int[size];
+        }
+        if(horizontal.length < (windowEnd - top) * width) horizontal = new int[(windowEnd - top) * width];
+
+        final int[] data = pixels.data;
+        final int mask = SLICCodec.RGB_MASK, stride = pixels.stride, max = maxLength;
+
+        for(int r = computedEnd - 1; r >= top; r--) {
+            final boolean lastRow = r == computedEnd - 1, inWindow = r < windowEnd;
+            final int at = (r - top) * width, below = at + width;
+            final int p = pixels.index(r, 0);
+
+            // The rightmost column, nothing to its right
+            int c = width - 1;
+            int color = data[p + c] & mask;
+            if(inWindow) horizontal[at + c] = 1;
+            vertical[at + c] = !lastRow && (data[p + c + stride] & mask) == color ? Math.min(vertical[below + c] + 1, max) : 1;
+            square[at + c] = 1;
+
+            for(c = width - 2; c >= 0; c--) {
+                color = data[p + c] & mask;
+                boolean sameRight = (data[p + c + 1] & mask) == color;
+                boolean sameBelow = !lastRow && (data[p + c + stride] & mask) == color;
+
+                if(inWindow) horizontal[at + c] = sameRight ? Math.min(horizontal[at + c + 1] + 1, max) : 1;
+                vertical[at + c] = sameBelow ? Math.min(vertical[below + c] + 1, max) : 1;
+
+                if(sameRight && sameBelow && (data[p + c + stride + 1] & mask) == color) {
+                    int smallest = Math.min(square[at + c + 1], Math.min(square[below + c], square[below + c + 1]));
+                    square[at + c] = Math.min(smallest + 1, max);
+                } else square[at + c] = 1;
+            }
+        }
+    }
+}
@@ -1,13 +1,11 @@
 // Written by İ.K. Bilir (Abes400)
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 
 import java.io.IOException;
 
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 
 /**
  * The Compressor and Decompressor (CODEC) class that is capable of taking an image file in format of <strong>SLC</strong>
@@ -15,6 +13,12 @@ import java.nio.file.StandardOpenOption;
  * It's also capable of taking a <strong>BufferedImage</strong> object, compress it and write it onto a <strong>.slc</strong>
  * file.
  *
+ * <p>
+ *  The static methods here work on the image the app is showing, whose size is held in <strong>rowCount</strong> and
+ *  <strong>colCount</strong>. The actual work is done by <strong>SLICEncoder</strong> and <strong>SLICDecoder</strong>,
+ *  use them directly to (de)compress several images at the same time.
+ * </p>
+ *
  * @author İ.K. Bilir (Abes400)
  * @since 1.0
  */
@@ -32,17 +36,37 @@ public class SLICCodec {
      *  dimensions to these values so that it knows the size of the image to be compressed.
      * </p>
      */
-    public static short rowCount, colCount;
+    public static int rowCount, colCount;
+
+    // Tile modes, as they are stored in the MM bits of a tile.
+    static final int DOT = 0, HORIZONTAL_LINE = 1, VERTICAL_LINE = 2, SQUARE = 3;
+
+    // The longest line or the biggest square a single tile can hold, limited by the 6 size bits of a tile.
+    static final int MAX_LENGTH = 63;
+
+    // With the EXTENDED flag, a dot of this size stands for the tile before it, repeated a number of times.
+    static final int REPEAT = 1;
+
+    // The most bytes a varint of a 32-bit number takes.
+    static final int MAX_VARINT_SIZE = 5;
 
-    // Holds where the last top left corner of the tile to be created or drawn should be.
-    private static short cursorRow, cursorCol;
+    // Only the RGB part of a pixel is stored in SLIC files, alpha is ignored when comparing pixels.
+    static final int RGB_MASK = 0xFFFFFF;
 
-    // A DP boolean matrix to store which parts of the image are painted.
-    // When decompressing, It helps us determine where the next "tile" should go.
-    // When compressing, it helps us determine where the next "tile" should be generated from.
-    // Working together with cursorRow and cursorCount, it helps us see what parts of the image are
-    //      already painted.
-    private final static boolean[][] alreadyPainted = new boolean[5000][5000];
+    // Format versions. Version 1 files start with their height, whose first bit is always 0. Version 2 files start
+    // with MAGIC instead, whose first bit is 1, that is how the two are told apart.
+    static final int VERSION_1 = 1, VERSION_2 = 2;
+    static final int MAGIC = 0x89534C43; // 0x89 'S' 'L' 'C'
+
+    // Size of the fixed part of a version 2 header, the band offset table follows it.
+    static final int V2_HEADER_SIZE = 20;
+
+    // Flags of a version 2 file, telling how the bands are stored.
+    static final int FLAG_ENTROPY = 1, FLAG_PALETTE = 2, FLAG_EXTENDED = 4;
+    static final int KNOWN_FLAGS = FLAG_ENTROPY | FLAG_PALETTE | FLAG_EXTENDED;
+
+    // How many rows a band of a version 2 file holds unless told otherwise.
+    static final int DEFAULT_BAND_HEIGHT = 128;
 
     /**
      * Decompresses the SLIC image file in the given path and write it to a BufferedImage
@@ -56,48 +80,11 @@ public class SLICCodec {
      * @param image The target BufferedImage on which we uncompressed image will be painted.
      */
     public static void readFile(Path compressedFile, BufferedImage image) throws IOException {
+        SLICDecoder decoder = new SLICDecoder();
+        decoder.decode(compressedFile, image);
 
-        byte[] rawBytes = Files.readAllBytes(compressedFile); // Save all the raw bytes in a byte array
-
-        // Need them for our boolean DP matrix, alreadyPainted
-        rowCount = (short)(((rawBytes[0] & 0xFF) << 8) | (rawBytes[1] & 0xFF));
-        colCount = (short)(((rawBytes[2] & 0xFF) << 8) | (rawBytes[3] & 0xFF));
-
-        // Clearing the alreadyPainted matrix in case of opening another file.
-        for(int r = 0 ; r < rowCount; r++)
-            for (int c = 0; c < colCount; c++)
-                alreadyPainted[r][c] = false;
-
-        // Resetting the position of cursors
-        cursorRow = cursorCol = 0;
-
-        // Hold the tile color
-        String tileColor;
-        short tileMode, tileSize;
-
-        //Thread.sleep(100); //
-
-        /*  FOR EACH TILE ITERATED:
-         *
-         *  1 - Read the tile information and extract the color, mode and size.
-         *  2 - Find the first unpainted spot
-         *  3 - Paint the tile with the information gathered from the top left corner as the first unpainted spot
-         *  4-  Assign the tile to the AlreadyPainted
-         */
-
-        // Iterating through the tiles contained in the file, and paint each tile tothe BufferedImage.
-        for(int cursor = 4 ; cursor <= rawBytes.length - 4; cursor += 4){
-
-            // Get the first 3 bytes to store the 24 bit color
-            tileColor = String.format("0x%02X%02X%02X", rawBytes[cursor], rawBytes[cursor+1], rawBytes[cursor+2]);
-            tileMode = (short)((rawBytes[cursor+3] & 0xFF) >> 6); // Get the first two bits from the 4th byte of the tile
-            tileSize = (short) (rawBytes[cursor+3]&0x3F);
-
-            // This is how you set the cursors to the first unpainted spot.
-            getFirstUnpaintedSpot();
-            paintTileToImage(tileMode, tileSize, tileColor, image);
-        }
-
+        rowCount = decoder.getHeight();
+        colCount = decoder.getWidth();
     }
 
     /**
@@ -105,172 +92,83 @@ public class SLICCodec {
      * @param image The BufferedImage we want to compress
      * @param compressedFile The target path to which the compressed image is saved
      */
-
     public static void saveToFile(BufferedImage image, Path compressedFile) throws IOException{
-        cursorRow = cursorCol = 0;
-
-        // Initiate the information needed for the Tile information to generate.
-        short length = 0; short mode;
-        int color = 0;
-
-        // Initiating the METADATA of the file, which stores the dimensions of the image
-        byte[] sizes = new byte[4], colorsAndMetadata = new byte[4];
-        sizes[0] = (byte)((rowCount >> 8) & 0xFF);
-        sizes[1] = (byte)(rowCount & 0XFF);
-        sizes[2] = (byte)((colCount>>8) & 0xFF);
-        sizes[3] = (byte)(colCount & 0xFF);
-
-        // Writing the METADATA
-        Files.write(compressedFile, sizes, StandardOpenOption.CREATE);
-
-
-        // Clearing the alreadyPainted matrix in case of opening another file.
-        for(int r = 0 ; r < rowCount; r++)
-            for (int c = 0; c < colCount; c++)
-                alreadyPainted[r][c] = false;
-
-
-        // The iteration loop for extracting the tiles out of the BufferedImage
-        /* AT EACH ITERATION:
-         * 1 - Go to the first unpainted spot
-         * 2 - Try to create a homogeneous square as big as possible (mode 3) until there is an odd pixel
-         * 3 - If length is more than 1, jump to step 9
-         * 4 - Try to create a homogeneous horizontal line as long as possible (mode 1) until there is an odd pixel
-         * 5 - If length is more than 1, jump to step 10
-         * 6 - Try to create a homogeneous vertical line as long as possible (mode 2) until there is an odd pixel
-         * 7 - If length is more than 1, jump to step 11
-         * 8 - Assign the mode as dot (mode 0) and jump to step 12
-         * 9 - Assign the mode as square (mode 3) and jump to step 12
-         * 10- Assign the mode as horizontal line (mode 1) and jump to step 12
-         * 11- Assign the mode as vertical line (mode 2)
-         * 12- Assign the color and length
-         * 13- Assign the tile to the AlreadyPainted
-         * 14- Write the collected tile information bytes to the file
-         */
-        do{
-            // step 1
-            getFirstUnpaintedSpot();
-
-            // step 2 to 11
-            for(mode = (short)3; mode >= 0; mode--){
-                for(length = 1; length < 63; length++){
-
-                    color = image.getRGB(cursorCol, cursorRow);
-
-                    if(containsAnOdd(color, mode, length, image)) {
-                        length--;
-                        break;
-                    }
-
-                }
-
-                if(length > 1) break;
-            }
-
-            // step 12
-            length = mode == 0 ? 0 : length;
-            mode = mode == 2 ? 1 : mode==1 ? 2 : mode;
-
-            colorsAndMetadata[0] = (byte)((color >> 16) & 0xFF);
-            colorsAndMetadata[1] = (byte)((color >> 8) & 0xFF);
-            colorsAndMetadata[2] = (byte)(color & 0xFF);
-            colorsAndMetadata[3] = (byte)(((mode << 6) & 0xFF) | length & 0xFF);
-
-            // step 13
-            paintTileToImage(mode, length, "",image);
-
-            // step 14
-            Files.write(compressedFile, colorsAndMetadata, StandardOpenOption.APPEND);
-
-        } while (!allAreasChecked());
-
-
-        System.out.println("Compression successful.");
+        new SLICEncoder().encode(image, colCount, rowCount, compressedFile);
     }
 
+    // How many bands an image of the given height is split into.
+    static int bandCount(int height, int bandHeight) {
+        return (int) (((long) height + bandHeight - 1) / bandHeight);
+    }
 
+    // A view on the bytes [from, to) of the buffer, starting at position 0.
+    static ByteBuffer slice(ByteBuffer buffer, long from, long to) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) to);
+        view.position((int) from);
+        return view.slice();
+    }
 
-    // Assign the tile to the AlreadyPainted, leave tileColor as empty string for only assigning
-    private static void paintTileToImage(short tileMode, short tileSize, String tileColor, BufferedImage image){
-        short width = 0, height = 0;
-
-        // Width and height information is decided by the tileMode
-        switch (tileMode){
-            case 0: width = 1;
-                height = 1;
-                break;
-            case 1: width = tileSize;
-                height = 1;
-                break;
-            case 2: width = 1;
-                height = tileSize;
-                break;
-            case 3: width = height = tileSize;
-                break;
-        }
-
-        // Actually painting the tile
-        for(short r = cursorRow; r < cursorRow + height; r++)
-            for(short c = cursorCol; c < cursorCol + width; c++){
-                alreadyPainted[r][c] = true;
-                if(!tileColor.isEmpty()) // Painting the tile
-                    image.setRGB(c, r, Color.decode(tileColor).getRGB());
-            }
+    // Width of a tile of the given mode and size, in pixels.
+    static int tileWidth(int tileMode, int tileSize) {
+        return tileMode == HORIZONTAL_LINE || tileMode == SQUARE ? tileSize : 1;
     }
 
+    // Height of a tile of the given mode and size, in pixels.
+    static int tileHeight(int tileMode, int tileSize) {
+        return tileMode == VERTICAL_LINE || tileMode == SQUARE ? tileSize : 1;
+    }
 
-    // Assigns the coordinates of the first spot on the AlreadyPainted dp matrix.
-    private static void getFirstUnpaintedSpot(){
-        for(short r = cursorRow; r < rowCount; r++)
-            for(short c = 0; c < colCount; c++)
-                if (!alreadyPainted[r][c]){
-                    cursorRow = r;
-                    cursorCol = c;
+    // Whether a tile of a file with the EXTENDED flag, given by its MMSSSSSS byte, is followed by a varint: the length
+    // of a line or square too long for the size bits, or the repeat count of a REPEAT.
+    static boolean hasExtension(int tile) {
+        int tileMode = (tile >> 6) & 0x3, tileSize = tile & 0x3F;
+        return tileMode == DOT ? tileSize == REPEAT : tileSize == 0;
+    }
 
-                    System.out.println(r*colCount+c + " of " + rowCount*colCount);
-                    return;
-                }
+    // Whether a tile of a file with the EXTENDED flag, given by its MMSSSSSS byte, is a REPEAT.
+    static boolean isRepeat(int tile) {
+        return (tile & 0xFF) == (DOT << 6 | REPEAT);
     }
 
-    // Checks whether the tested tile is homogeneous or not.
-    private static boolean containsAnOdd (int color, short tileMode, short tileSize, BufferedImage image) {
-
-        // Width and height information is decided by the tileMode
-        int width = 0, height = 0;
-        switch (tileMode){
-            case 0: width = 1;
-                height = 1;
-                break;
-            case 2: width = tileSize;
-                height = 1;
-                break;
-            case 1: width = 1;
-                height = tileSize;
-                break;
-            case 3: width = height = tileSize;
-                break;
+    // Writes a number as a varint into the array, 7 bits a byte, lowest bits first, every byte but the last with its
+    // first bit set. Returns how many bytes it took, at most MAX_VARINT_SIZE.
+    static int writeVarint(int value, byte[] target, int offset) {
+        int position = offset;
+        while((value & ~0x7F) != 0) {
+            target[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
         }
-
-        // Checks for different color
-        for(short r = cursorRow; r < cursorRow + height && r <= rowCount; r++)
-            for(short c = cursorCol; c < cursorCol+ width && c <= colCount; c++){
-
-                if(r == rowCount || c == colCount ){ return true; }
-                if (image.getRGB(c, r) != color){ return true; }
-
-            }
-
-        return false;
+        target[position++] = (byte) value;
+        return position - offset;
     }
 
-    // Ensures if all areas are checked.
-    private static boolean allAreasChecked () {
-        for(int r = cursorRow; r < rowCount; r++) { // IF THE ALGORITHM MALFUNCTIONS CHANGE THE CURSORROW TO 0
+    // Writes a number as a varint into the buffer, like writeVarint() above. The buffer needs room for
+    // MAX_VARINT_SIZE bytes. Returns how many bytes it took.
+    static int writeVarint(int value, ByteBuffer target) {
+        int start = target.position();
+        while((value & ~0x7F) != 0) {
+            target.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+        return target.position() - start;
+    }
 
-            for(int c = 0; c < colCount; c++){ if(!alreadyPainted[r][c]) return false; }
+    // Whether an image is small enough for a version 1 file, whose header holds its size in 16 bits each way.
+    static boolean fitsVersion1(int width, int height) {
+        return width <= Short.MAX_VALUE && height <= Short.MAX_VALUE;
+    }
 
+    // Reads a varint written by TileOutput.putVarint(). A varint cut off by the end of the buffer ends there.
+    static int readVarint(ByteBuffer input) {
+        int value = 0;
+        for(int shift = 0; shift < 32 && input.hasRemaining(); shift += 7) {
+            int part = input.get();
+            value |= (part & 0x7F) << shift;
+            if(part >= 0) break;
         }
-        return true;
+        return value & Integer.MAX_VALUE;
     }
 }
 
@@ -346,7 +244,7 @@ public class SLICCodec {
                    In our format, it's stored in 32 bits, this is how the compression occurs.
 
                    
-              FILE STRUCTURE: The letters show what that bit is used for.
+              FILE STRUCTURE (VERSION 1): The letters show what that bit is used for.
 
                 W : Image Width     H : Image Height
                 R : Red             G : Green           B : Blue
@@ -359,5 +257,81 @@ public class SLICCodec {
                                 ...
                 RRRRRRRR GGGGGGGG BBBBBBBB MMSSSSSS     -> Tile information
                 RRRRRRRR GGGGGGGG BBBBBBBB MMSSSSSS     -> Tile information
+
+
+              FILE STRUCTURE (VERSION 2): All numbers are big-endian.
+
+                In version 1 every tile goes to the first unpainted spot of the whole image, so the tiles can only
+                be painted one after the other. Version 2 splits the image into horizontal BANDS of the same height
+                (the last one may be shorter). Every band has its own stream of tiles, placed by the same "first
+                unpainted spot" rule within the band, and no tile reaches out of its band. That way the bands can be
+                compressed and decompressed at the same time, on all cores. The dimensions take 31 bits instead of
+                15, and a band only needs its own rows in memory, so images far bigger than the heap can be stored
+                through a LargeImage.
+
+                10001001 01010011 01001100 01000011     -> Magic: 0x89 'S' 'L' 'C'
+                VVVVVVVV FFFFFFFF 00000000 00000000     -> Version (2), Flags, unused
+                HHHHHHHH HHHHHHHH HHHHHHHH HHHHHHHH     -> Image Height
+                WWWWWWWW WWWWWWWW WWWWWWWW WWWWWWWW     -> Image Width
+                BBBBBBBB BBBBBBBB BBBBBBBB BBBBBBBB     -> Band Height
+                Palette, only if the PALETTE flag is set
+                OOOOOOOO ... (64 bits)                  -> Offset of band 0 in the file
+                                ...
+                OOOOOOOO ... (64 bits)                  -> Offset of the last band
+                OOOOOOOO ... (64 bits)                  -> Offset of the end of the last band
+                Tiles of band 0, stored exactly like the tiles of version 1
+                                ...
+                Tiles of the last band
+
+
+              FLAGS (VERSION 2): Bits of the flags byte, a file with a flag unknown to the decoder is refused.
+
+                00000XPE
+
+                P : PALETTE, the image has at most 256 colors. They are stored right before the band offset table,
+                    and the tiles store the index of their color instead of the color itself.
+
+                    NNNNNNNN NNNNNNNN NNNNNNNN NNNNNNNN       -> Number of colors, 1 to 256
+                    00000000 RRRRRRRR GGGGGGGG BBBBBBBB       -> Color 0
+                                    ...
+
+                    Without ENTROPY, the tiles of a band are stored in 2 bytes each:
+
+                    IIIIIIII MMSSSSSS                         -> Index of the color, Mode, Size
+
+                    or, if there are 16 colors at most, two tiles in 3 bytes. The second tile of the last pair is
+                    left empty if the band has an odd number of tiles:
+
+                    IIIIMMSS SSSSIIII MMSSSSSS
+
+                E : ENTROPY, every band is stored as below instead of as plain tiles.
+
+                    CCCCCCCC CCCCCCCC CCCCCCCC CCCCCCCC       -> Count of the tiles in the band
+                    Code lengths of the head symbols          -> 768 symbols: prediction (0 - 2) * 256 + MMSSSSSS
+                    Code lengths of the green differences     -> 256 symbols
+                    Code lengths of the red/blue differences  -> 256 symbols
+                    Bits, most significant first              -> Per tile: head symbol, and if the prediction is 2,
+                                                                 the green, red and blue differences
+
+                    Prediction 0 : the color of the tile before it in the band (black for the first tile)
+                    Prediction 1 : the color of the last tile painted in the column of the tile, in the band
+                    Prediction 2 : green = G - G', red = R - R' - green, blue = B - B' - green, all modulo 256,
+                                   where R'G'B' is the color of the tile before it. With PALETTE, only the index
+                                   of the color is stored, in place of the green difference.
+
+                    A code length is stored in a byte: 0 to 12 is the length of the code of the next symbol,
+                    16 + n means the next n + 1 symbols do not occur. The codes are canonical Huffman codes.
+
+                X : EXTENDED, for big areas of a single color. Two kinds of tiles are followed by a VARINT, a number
+                    stored 7 bits a byte, lowest bits first, with the first bit of every byte but the last set:
+
+                    Mode 1, 2 or 3 with size 0  -> A line or square longer than 63 pixels, the varint is its length
+                    Mode 0 with size 1 (REPEAT) -> The tile before it, repeated as many more times as the varint says,
+                                                   its color bits are unused
+
+                    In plain tiles the varint follows the 4 bytes of the tile, with PALETTE it follows the 2 bytes of
+                    the tile or the 3 bytes of the pair of tiles, and with ENTROPY its bytes follow the head symbol in
+                    the bits, 8 bits a byte. A REPEAT counts as a single tile in the tile count of an entropy coded
+                    band.
          */
 
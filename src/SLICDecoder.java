@@ -0,0 +1,796 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decompresses <strong>.slc</strong> files. Unlike the static methods of <strong>SLICCodec</strong>, a decoder keeps
+ * all its working state to itself, so any number of decoders can work at the same time on different threads.
+ * A single decoder must not be used by two threads at once.
+ *
+ * <p>
+ *  Both version 1 and version 2 files can be decompressed. The bands of version 2 files are decompressed in parallel
+ *  on the common <strong>ForkJoinPool</strong>, and <strong>decodeRegion()</strong> decompresses only the bands
+ *  covering a part of the image. <strong>decodeScaled()</strong> paints the tiles straight onto an image 2, 4 or 8
+ *  times smaller, for thumbnails and overviews.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code BufferedImage image = new SLICDecoder().decode(path);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class SLICDecoder {
+
+    /** Ways of making a smaller image: taking the top left pixel of every block, or the average of the block. */
+    public static final int NEAREST = 0, BOX = 1;
+
+    /** The most an image can be made smaller by <strong>decodeScaled()</strong>. */
+    public static final int MAX_SCALE_FACTOR = 8;
+
+    // Dimensions of the most recent file decompressed.
+    private int width, height;
+
+    // Layout of the most recent file decompressed. A version 1 file is handled as a single band covering the
+    // whole image, which starts right after the metadata.
+    private int version, flags, bandHeight;
+    private long[] bandOffsets;
+
+    // The opaque colors of the palette of the most recent file, null if it has none. It has 16 entries if the indices
+    // take 4 bits and 256 if they take 8, the unused ones are black. A broken index is cut to fit.
+    private int[] palette;
+
+    private ProgressListener progressListener;
+
+    /**
+     * Chooses the listener told about the progress of every image decompressed from now on.
+     * @param listener The listener, or null to work silently
+     */
+    public void setProgressListener(ProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path into a new image of exactly its size.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @return The uncompressed image, of type <strong>TYPE_INT_ARGB</strong>
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     */
+    public BufferedImage decode(Path compressedFile) throws IOException {
+        return decode(compressedFile, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path into a new image of exactly its size and of the given type.
+     * A <strong>TYPE_INT_RGB</strong> image, for instance, can be written as a bitmap right away.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param imageType The type of the new image, <strong>TYPE_INT_RGB</strong> or <strong>TYPE_INT_ARGB</strong>
+     *                  are painted the fastest
+     * @return The uncompressed image
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public BufferedImage decode(Path compressedFile, int imageType) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            BufferedImage image = new BufferedImage(width, height, imageType);
+            ImagePixels pixels = ImagePixels.of(image, width, height);
+            paintBands(reader, pixels, null);
+            pixels.commit();
+            return image;
+        }
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path and paints it onto the top left corner of the given image.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param image The target image, it must be at least as big as the compressed one
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     */
+    public void decode(Path compressedFile, BufferedImage image) throws IOException {
+        decode(compressedFile, image, null);
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path and paints it onto the top left corner of the given image,
+     * telling the listener about every group of rows as soon as they are final. The rows can then be shown while
+     * the rest of the image is still being decompressed.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param image The target image, it must be at least as big as the compressed one and of type
+     *              <strong>TYPE_INT_RGB</strong> or <strong>TYPE_INT_ARGB</strong> for the rows to show up before
+     *              the whole image is done
+     * @param listener The listener to be told about finished rows, or null
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression. The
+     *                                                    rows that have not been reported yet may be incomplete.
+     */
+    public void decode(Path compressedFile, BufferedImage image, DecodeListener listener) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            ImagePixels pixels = ImagePixels.of(image, width, height);
+            paintBands(reader, pixels, listener);
+            pixels.commit();
+        }
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path into a new image of exactly its size, kept in a scratch
+     * file in the temporary directory of the system. Every band is painted in memory of its own and then written
+     * onto the image, so a version 2 file can be far bigger than the heap. A version 1 file is a single band, it has
+     * to fit into memory as a whole.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @return The uncompressed image, to be closed once it is not needed anymore
+     * @throws IOException If the file cannot be read or is not a SLIC file, or the image cannot be written
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public LargeImage decodeLarge(Path compressedFile) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            // Every band is painted into a single array first, however big the image is.
+            if((long) width * Math.min(bandHeight, height) > Integer.MAX_VALUE - 8 || width > LargeImage.MAX_WIDTH)
+                throw new IOException(width + "x" + height + " is too wide to be decompressed band by band.");
+
+            LargeImage image = new LargeImage(width, height);
+            try {
+                paintBands(reader, image);
+                return image;
+            } catch (IOException | RuntimeException e) {
+                image.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path and paints it onto the top left corner of the given image,
+     * band by band, like <strong>decodeLarge()</strong> does.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param image The target image, it must be at least as big as the compressed one
+     * @throws IOException If the file cannot be read or is not a SLIC file, or the image cannot be written
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public void decode(Path compressedFile, LargeImage image) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            if(width > image.getWidth() || height > image.getHeight())
+                throw new IllegalArgumentException(width + "x" + height + " does not fit into a "
+                        + image.getWidth() + "x" + image.getHeight() + " image");
+            paintBands(reader, image);
+        }
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path band by band, handing every band over to the sink as soon
+     * as it is painted, like a <strong>BitmapWriter</strong> exporting the image. The bands come from several threads
+     * and in no particular order. Only the bands in progress are in memory, so a version 2 file can be far bigger
+     * than the heap. A version 1 file is a single band, it has to fit into memory as a whole.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param sink Where the rows go, it must take rows as wide as the image. <strong>readHeader()</strong> tells the
+     *             size of the image beforehand.
+     * @throws IOException If the file cannot be read or is not a SLIC file, or the sink fails to take the rows
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public void decode(Path compressedFile, RowSink sink) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+            paintBands(reader, sink);
+        }
+    }
+
+    /**
+     * Decompresses only the given area of the SLIC image file in the given path, into a new image of exactly its
+     * size. The bands of a version 2 file are found through its band table, so only the bands covering the rows of
+     * the area are read and painted, however far down the image they are. A version 1 file is a single band, it is
+     * decompressed as a whole.
+     *
+     * <pre>
+     *     <strong>Ex:</strong>
+     *     {@code BufferedImage visible = new SLICDecoder().decodeRegion(path, view.x, view.y, view.width, view.height);}
+     * </pre>
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param x Column of the top left corner of the area
+     * @param y Row of the top left corner of the area
+     * @param w Width of the area
+     * @param h Height of the area
+     * @return The uncompressed area, of type <strong>TYPE_INT_ARGB</strong>
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     * @throws IllegalArgumentException If the area does not lie within the image
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public BufferedImage decodeRegion(Path compressedFile, int x, int y, int w, int h) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            if(x < 0 || y < 0 || w < 1 || h < 1 || x > width - w || y > height - h)
+                throw new IllegalArgumentException("The area " + w + "x" + h + " at " + x + "," + y
+                        + " is out of the " + width + "x" + height + " image");
+
+            BufferedImage region = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            ImagePixels target = ImagePixels.of(region, w, h);
+
+            // Every band copies the part of its rows within the area, the bands never share a row of the target.
+            RowSink sink = (top, bottom, rows) -> {
+                for(int row = Math.max(top, y); row < Math.min(bottom, y + h); row++)
+                    System.arraycopy(rows.data, rows.index(row, x), target.data, target.index(row - y, 0), w);
+            };
+
+            paintBands(reader, null, sink, null, y / bandHeight, (y + h - 1) / bandHeight + 1);
+            target.commit();
+            return region;
+        }
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path into a new image <strong>factor</strong> times smaller each
+     * way, without ever painting the image at its full size. Every tile is painted straight onto the smaller image,
+     * so it costs far less memory than a full decompression, and less time too.
+     *
+     * <p>
+     *  Every pixel of the smaller image stands for a block of <strong>factor x factor</strong> pixels. With
+     *  <strong>NEAREST</strong> it takes the color of the top left pixel of the block, only the tiles covering such
+     *  pixels are painted at all. With <strong>BOX</strong> it takes the average color of the block, the tiles add
+     *  their colors up block by block.
+     * </p>
+     *
+     * <pre>
+     *     <strong>Ex:</strong>
+     *     {@code BufferedImage thumbnail = new SLICDecoder().decodeScaled(path, 8, SLICDecoder.BOX);}
+     * </pre>
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param factor How many times smaller the image is made each way, 1, 2, 4 or 8
+     * @param sampling <strong>NEAREST</strong> or <strong>BOX</strong>
+     * @return The smaller image, of type <strong>TYPE_INT_ARGB</strong>. A part of a block beyond the edge of the
+     *         image is left out, the image is <strong>ceil(width / factor) x ceil(height / factor)</strong>.
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public BufferedImage decodeScaled(Path compressedFile, int factor, int sampling) throws IOException {
+        return paintScaled(compressedFile, factor, sampling, null);
+    }
+
+    /**
+     * Decompresses the SLIC image file in the given path <strong>factor</strong> times smaller each way, like
+     * <strong>decodeScaled(compressedFile, factor, sampling)</strong>, and paints it onto the top left corner of the
+     * given image.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @param factor How many times smaller the image is made each way, 1, 2, 4 or 8
+     * @param sampling <strong>NEAREST</strong> or <strong>BOX</strong>
+     * @param image The target image, at least <strong>ceil(width / factor) x ceil(height / factor)</strong>
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     * @throws java.util.concurrent.CancellationException If the progress listener cancels the decompression
+     */
+    public void decodeScaled(Path compressedFile, int factor, int sampling, BufferedImage image) throws IOException {
+        paintScaled(compressedFile, factor, sampling, Objects.requireNonNull(image));
+    }
+
+    // Decompresses the file onto the given image, or onto a new one of the right size if it is null.
+    private BufferedImage paintScaled(Path compressedFile, int factor, int sampling, BufferedImage image)
+            throws IOException {
+        if(factor < 1 || factor > MAX_SCALE_FACTOR || Integer.bitCount(factor) != 1)
+            throw new IllegalArgumentException("An image cannot be made " + factor + " times smaller.");
+        if(sampling != NEAREST && sampling != BOX) throw new IllegalArgumentException("Unknown sampling " + sampling);
+
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+
+            int shift = Integer.numberOfTrailingZeros(factor);
+            int scaledWidth = scaled(width, shift), scaledHeight = scaled(height, shift);
+            if(image == null) image = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+            ImagePixels scaledPixels = ImagePixels.of(image, scaledWidth, scaledHeight);
+            boolean box = sampling == BOX && factor > 1;
+
+            CodecProgress progress = new CodecProgress(false, width, height, progressListener);
+            boolean completed = false;
+            progress.start();
+
+            try {
+                // A block of pixels lying in two bands gets its sums from both of them. Unless the blocks are never
+                // cut by the bands, the bands are painted one after the other, each one handing the sums of the
+                // blocks it shares with the next one over to it.
+                int last = bandOffsets.length - 1;
+                if(!box || bandHeight % factor == 0)
+                    forEachBand(0, last, true, band -> paintScaledBand(reader, band, shift, box, scaledPixels, null,
+                            progress));
+                else {
+                    long[] shared = null;
+                    for(int band = 0; band < last; band++)
+                        shared = paintScaledBand(reader, band, shift, true, scaledPixels, shared, progress);
+                }
+                completed = true;
+            } finally {
+                progress.finish(completed);
+            }
+
+            scaledPixels.commit();
+            return image;
+        }
+    }
+
+    /**
+     * Reads only the header of the SLIC image file in the given path. <strong>getWidth()</strong>,
+     * <strong>getHeight()</strong> and <strong>getVersion()</strong> tell about this file afterwards, so that an image
+     * of the right size can be made before the file is decompressed.
+     * @param compressedFile The source path to the image file of SLIC format
+     * @throws IOException If the file cannot be read or is not a SLIC file
+     */
+    public void readHeader(Path compressedFile) throws IOException {
+        try(SLICFileReader reader = new SLICFileReader(compressedFile)) {
+            readHeader(reader);
+        }
+    }
+
+    /** @return The width of the most recent file decompressed */
+    public int getWidth() { return width; }
+
+    /** @return The height of the most recent file decompressed */
+    public int getHeight() { return height; }
+
+    /** @return The format version of the most recent file decompressed */
+    public int getVersion() { return version; }
+
+    /** @return The rows in a band of the most recent file decompressed, the whole height for a version 1 file */
+    public int getBandHeight() { return bandHeight; }
+
+    // Only the header is read here, the tiles are read band by band while they are being painted.
+    private void readHeader(SLICFileReader reader) throws IOException {
+        if(reader.size() < 4) throw new IOException("Not a SLIC file, it is too short to hold the metadata.");
+        ByteBuffer header = reader.read(0, Math.min(reader.size(), SLICCodec.V2_HEADER_SIZE));
+
+        // 0HHHHHHH HHHHHHHH 0WWWWWWW WWWWWWWW
+        if((header.get(0) & 0x80) == 0) {
+            version = SLICCodec.VERSION_1;
+            flags = 0;
+            palette = null;
+            height = header.getShort(0) & 0x7FFF;
+            width = header.getShort(2) & 0x7FFF;
+            bandHeight = Math.max(height, 1);
+            bandOffsets = new long[] { 4, reader.size() - (reader.size() - 4) % 4 };
+            return;
+        }
+
+        if(header.getInt(0) != SLICCodec.MAGIC || header.limit() < SLICCodec.V2_HEADER_SIZE)
+            throw new IOException("Not a SLIC file.");
+
+        version = header.get(4) & 0xFF;
+        flags = header.get(5) & 0xFF;
+        if(version != SLICCodec.VERSION_2 || (flags & ~SLICCodec.KNOWN_FLAGS) != 0)
+            throw new IOException("This SLIC file needs a newer version of SLIC Viewer.");
+
+        height = header.getInt(8);
+        width = header.getInt(12);
+        bandHeight = header.getInt(16);
+        if(height < 0 || width < 0 || bandHeight < 1) throw new IOException("Broken SLIC file header.");
+
+        long tableStart = readPalette(reader);
+
+        // The offset table, every band has to lie between the table and the end of the file.
+        int bandCount = SLICCodec.bandCount(height, bandHeight);
+        long tableEnd = tableStart + (bandCount + 1) * 8L;
+        if(tableEnd > reader.size()) throw new IOException("Broken SLIC file, the band table is cut off.");
+        ByteBuffer table = reader.read(tableStart, tableEnd);
+
+        bandOffsets = new long[bandCount + 1];
+        for(int i = 0; i <= bandCount; i++) {
+            bandOffsets[i] = table.getLong(i * 8);
+            if(bandOffsets[i] < (i == 0 ? tableEnd : bandOffsets[i - 1]) || bandOffsets[i] > reader.size())
+                throw new IOException("Broken SLIC file, band " + i + " is out of place.");
+        }
+    }
+
+    // Reads the palette right after the fixed part of the header if there is one, and returns where it ends.
+    private long readPalette(SLICFileReader reader) throws IOException {
+        palette = null;
+        if((flags & SLICCodec.FLAG_PALETTE) == 0) return SLICCodec.V2_HEADER_SIZE;
+
+        if(reader.size() < SLICCodec.V2_HEADER_SIZE + 4) throw new IOException("Broken SLIC file, the palette is cut off.");
+        int size = reader.read(SLICCodec.V2_HEADER_SIZE, SLICCodec.V2_HEADER_SIZE + 4).getInt(0);
+        if(size < 1 || size > Palette.MAX_COLORS) throw new IOException("Broken SLIC file, the palette is not valid.");
+
+        long end = SLICCodec.V2_HEADER_SIZE + 4 + size * 4L;
+        if(end > reader.size()) throw new IOException("Broken SLIC file, the palette is cut off.");
+        ByteBuffer colors = reader.read(SLICCodec.V2_HEADER_SIZE + 4, end);
+
+        palette = new int[size <= Palette.MAX_SMALL_COLORS ? Palette.MAX_SMALL_COLORS : Palette.MAX_COLORS];
+        Arrays.fill(palette, 0xFF000000);
+        for(int i = 0; i < size; i++) palette[i] = 0xFF000000 | (colors.getInt(i * 4) & SLICCodec.RGB_MASK);
+        return end;
+    }
+
+    // Decompresses every band of the file onto the pixels, keeping track of the progress of the whole image.
+    private void paintBands(SLICFileReader reader, ImagePixels pixels, DecodeListener listener) throws IOException {
+        paintBands(reader, pixels, null, listener, 0, bandOffsets.length - 1);
+    }
+
+    // Decompresses every band of the file into rows of its own, and hands them over to the sink.
+    private void paintBands(SLICFileReader reader, RowSink sink) throws IOException {
+        paintBands(reader, null, sink, null, 0, bandOffsets.length - 1);
+    }
+
+    // Decompresses the bands [first, last) of the file, keeping track of the progress of the rows they cover.
+    private void paintBands(SLICFileReader reader, ImagePixels pixels, RowSink sink, DecodeListener listener,
+                            int first, int last) throws IOException {
+        int top = first * bandHeight, bottom = Math.min(height, last * bandHeight);
+        CodecProgress progress = new CodecProgress(false, width, bottom - top, progressListener);
+        boolean completed = false;
+        progress.start();
+
+        try {
+            paintBands(reader, pixels, sink, listener, first, last, progress);
+            completed = true;
+        } finally {
+            progress.finish(completed);
+        }
+    }
+
+    // Decompresses the bands [first, last) of the file onto the pixels or into the sink, in parallel if there are
+    // several of them.
+    private void paintBands(SLICFileReader reader, ImagePixels pixels, RowSink sink, DecodeListener listener,
+                            int first, int last, CodecProgress progress) throws IOException {
+        if(listener != null) listener.decodeStarted(width, height);
+        forEachBand(first, last, true, band -> paintBand(reader, band, pixels, sink, listener, progress));
+    }
+
+    // Paints the bands [first, last), on the ForkJoinPool if they can be painted at the same time.
+    private static void forEachBand(int first, int last, boolean parallel, BandPainter painter) throws IOException {
+        if(last - first == 1 || !parallel) {
+            for(int band = first; band < last; band++) painter.paint(band);
+            return;
+        }
+
+        // Every band reads its own part of the file and paints its own rows, so they never get in each other's way.
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(last - first);
+        for(int band = first; band < last; band++) {
+            final int index = band;
+
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                try {
+                    painter.paint(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        try {
+            for(ForkJoinTask<?> task : tasks) task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Paints a single band, given its number.
+    private interface BandPainter {
+        void paint(int band) throws IOException;
+    }
+
+    // Paints a band onto the pixels. With a sink, the band is painted onto rows of its own first, which are only in
+    // memory while the band is in progress.
+    private void paintBand(SLICFileReader reader, int band, ImagePixels pixels, RowSink sink,
+                           DecodeListener listener, CodecProgress progress) throws IOException {
+        int top = band * bandHeight, bottom = Math.min(height, top + bandHeight);
+        ImagePixels rows = sink == null ? pixels : ImagePixels.ofRows(width, top, bottom);
+
+        new Band(top, bottom, width, flags, palette, rows, listener, progress)
+                .paint(reader, bandOffsets[band], bandOffsets[band + 1]);
+        if(sink != null) sink.setRows(top, bottom, rows);
+    }
+
+    // Paints a band onto the smaller image. With BOX, returns the sums of the blocks the band shares with the next
+    // one, or null if it shares none.
+    private long[] paintScaledBand(SLICFileReader reader, int band, int shift, boolean box, ImagePixels scaledPixels,
+                                   long[] shared, CodecProgress progress) throws IOException {
+        int top = band * bandHeight, bottom = Math.min(height, top + bandHeight);
+        ScaledBand painter = new ScaledBand(top, bottom, width, height, flags, palette, shift, scaledPixels, box,
+                shared, progress);
+
+        painter.paint(reader, bandOffsets[band], bandOffsets[band + 1]);
+        return box ? painter.average() : null;
+    }
+
+    // The number of pixels of a smaller image whose blocks start before the given pixel, the pixel n of the smaller
+    // image stands for the block starting at n << shift.
+    private static int scaled(long pixel, int shift) {
+        return (int) ((pixel + (1 << shift) - 1) >> shift);
+    }
+
+    // The rows [top, bottom) of the image being painted, and everything needed while painting them.
+    private static class Band {
+
+        // The listener hears about finished rows in steps of at least this many rows, or when the band is done.
+        static final int PUBLISH_ROWS = 16;
+
+        final int top, bottom, width, flags;
+        final boolean extended;
+        final int[] palette;
+        final ImagePixels pixels;
+        final DecodeListener listener;
+        final CodecProgress progress;
+        CoverageMap coverage;
+
+        // The rows above this one have already been reported to the listener.
+        int published;
+
+        // Tiles read, and pixels passed by the cursor and bytes of the band read since the progress was last added
+        // to the image's.
+        int sampled;
+        long covered, reported;
+
+        // What the tiles are being read from, and the offset of its first byte in the band.
+        ByteBuffer input;
+        long inputOffset;
+        EntropyCoder.Decoder decoder;
+
+        // The last tile painted and its length, for the REPEATs.
+        int lastTile, lastLength;
+
+        Band(int top, int bottom, int width, int flags, int[] palette, ImagePixels pixels, DecodeListener listener,
+             CodecProgress progress) {
+            this.top = top;
+            this.bottom = bottom;
+            this.width = width;
+            this.flags = flags;
+            this.extended = (flags & SLICCodec.FLAG_EXTENDED) != 0;
+            this.palette = palette;
+            this.pixels = pixels;
+            this.listener = listener;
+            this.progress = progress;
+            published = top;
+        }
+
+        // Paints the band whose tiles are the bytes [from, to) of the file. Version 1 files hold the whole image in
+        // one band which can be too big to be read at once, so a band of plain tiles is read in parts of whole tiles.
+        void paint(SLICFileReader reader, long from, long to) throws IOException {
+            coverage = CoverageMap.obtain(width, bottom - top);
+
+            try {
+                if(flags != 0) {
+                    if(to - from > SLICFileReader.MAX_PART) throw new IOException("A band of this file is too big.");
+                    input = reader.read(from, to);
+
+                    if((flags & SLICCodec.FLAG_ENTROPY) != 0) {
+                        decoder = new EntropyCoder.Decoder(input, width, flags);
+                        paintTiles(decoder);
+                    } else if(palette != null) paintIndexedTiles(input);
+                    else paintTiles(input);
+                } else for(long part = from; part < to; part += SLICFileReader.MAX_PART) {
+                    input = reader.read(part, Math.min(to, part + SLICFileReader.MAX_PART));
+                    inputOffset = part - from;
+                    if(!paintTiles(input)) break;
+                }
+            } finally {
+                coverage.release();
+                coverage = null;
+            }
+
+            // The whole band has been read from the file by now.
+            progress.add((long) (bottom - top) * width - covered, sampled, to - from - reported);
+            publish(bottom);
+        }
+
+        /*  FOR EACH TILE ITERATED:
+         *
+         *  1 - Read the tile information and extract the color, mode and size.
+         *  2 - Find the first unpainted spot of the band, stop if there is none left
+         *  3 - Tell the listener about the rows above the spot, they will not change anymore
+         *  4 - Paint the tile with the information gathered from the top left corner as the first unpainted spot
+         *  5 - Assign the tile to the coverage map
+         *  6 - Every SAMPLE_TILES tiles, add the progress of the band to the progress of the image
+         */
+        // Returns false once the band is completely painted.
+        boolean paintTiles(ByteBuffer tiles) {
+            while(tiles.remaining() >= 4)
+                if(!place(tiles.getInt(), tiles)) return false;
+            return true;
+        }
+
+        // The same, for a band of tiles storing the index of their color, 2 bytes a tile or 3 bytes every two tiles.
+        void paintIndexedTiles(ByteBuffer tiles) {
+            if(palette.length == Palette.MAX_COLORS) {
+                while(tiles.remaining() >= 2)
+                    if(!place(tiles.getShort() & 0xFFFF, tiles)) return;
+            } else while(tiles.remaining() >= 3) {
+                int pair = (tiles.getShort() & 0xFFFF) << 8 | (tiles.get() & 0xFF);
+                if(!place(pair >>> 12, tiles) || !place(pair & 0xFFF, tiles)) return;
+            }
+        }
+
+        // The same, for an entropy coded band. The color of a tile can depend on where it goes, so the spot is
+        // found before the tile is read.
+        void paintTiles(EntropyCoder.Decoder tiles) {
+            while(tiles.hasNext() && nextSpot()) {
+                int tile = tiles.next(coverage.col());
+                paintTile(tile, tiles.length());
+            }
+        }
+
+        // Paints a tile at the next spot. An extended tile takes its length, or its repeat count if it is a REPEAT,
+        // from the bytes right after it. Returns false once the band is completely painted.
+        boolean place(int tile, ByteBuffer tiles) {
+            int length = tile & 0x3F;
+
+            if(extended && SLICCodec.hasExtension(tile)) {
+                length = SLICCodec.readVarint(tiles);
+                if(SLICCodec.isRepeat(tile)) return repeat(length);
+            }
+
+            if(!nextSpot()) return false;
+            paintTile(tile, length);
+            return true;
+        }
+
+        // Paints the last tile again at the next spots. Returns false once the band is completely painted.
+        boolean repeat(int count) {
+            // An empty line or square of a broken file would be repeated without painting anything.
+            if(lastLength == 0 && (lastTile >> 6 & 0x3) != SLICCodec.DOT) return true;
+
+            for(int i = 0; i < count; i++) {
+                if(!nextSpot()) return false;
+                paintTile(lastTile, lastLength);
+            }
+            return true;
+        }
+
+        // Moves to the first unpainted spot of the band and tells the listener about the rows above it. Returns
+        // false once the band is completely painted.
+        boolean nextSpot() {
+            if(!coverage.nextUnpaintedSpot()) return false;
+
+            int row = top + coverage.row();
+            if(row - published >= PUBLISH_ROWS) publish(row);
+            return true;
+        }
+
+        // Paints the tile at the spot the cursor is on. Its length is the size in its last 6 bits, unless it is an
+        // extended tile.
+        void paintTile(int tile, int length) {
+            // The first 3 bytes store the 24 bit color, painted as an opaque 0xAARRGGBB pixel, or its index in the palette
+            int tileColor = palette == null ? 0xFF000000 | (tile >>> 8) : palette[(tile >>> 8) & (palette.length - 1)];
+            int tileMode = (tile >> 6) & 0x3; // The first two bits of the 4th byte of the tile
+
+            paintTile(top + coverage.row(), coverage.col(), tileMode, length, tileColor);
+            lastTile = tile;
+            lastLength = length;
+
+            if(++sampled == CodecProgress.SAMPLE_TILES) {
+                long cursor = (long) coverage.row() * width + coverage.col();
+                long read = decoder != null ? decoder.bytesRead() : inputOffset + input.position();
+                progress.add(cursor - covered, sampled, read - reported);
+                covered = cursor;
+                reported = read;
+                sampled = 0;
+            }
+        }
+
+        // Paints the tile with its top left corner at the given spot.
+        void paintTile(int row, int col, int tileMode, int tileSize, int tileColor) {
+            // A broken file must not make us paint outside the band.
+            int tileWidth = Math.min(SLICCodec.tileWidth(tileMode, tileSize), width - col);
+            int tileHeight = Math.min(SLICCodec.tileHeight(tileMode, tileSize), bottom - row);
+
+            fill(row, col, tileWidth, tileHeight, tileColor);
+            coverage.paint(tileWidth, tileHeight);
+        }
+
+        // Fills the area of a tile on the pixels, one span per row.
+        void fill(int row, int col, int tileWidth, int tileHeight, int tileColor) {
+            for(int r = row; r < row + tileHeight; r++) {
+                int start = pixels.index(r, col);
+                Arrays.fill(pixels.data, start, start + tileWidth, tileColor);
+            }
+        }
+
+        // Tells the listener that the rows [published, row) are final.
+        void publish(int row) {
+            if(listener != null && row > published) listener.rowsDecoded(published, row);
+            published = row;
+        }
+    }
+
+    // A band painted straight onto an image 1 << shift times smaller. The coverage map still works on the pixels of
+    // the full image, as the tiles are placed by them, but it only keeps a row of the band per column.
+    private static class ScaledBand extends Band {
+
+        final int imageHeight, shift, firstBlockRow;
+        final ImagePixels scaledPixels;
+
+        // With BOX, the sums of the red, green and blue of every block of the band, 16 bits each. A block of 8 x 8
+        // pixels adds up to 64 * 255 at most, they never run into each other.
+        final long[] sums;
+
+        ScaledBand(int top, int bottom, int width, int imageHeight, int flags, int[] palette, int shift,
+                   ImagePixels scaledPixels, boolean box, long[] shared, CodecProgress progress) {
+            super(top, bottom, width, flags, palette, null, null, progress);
+            this.imageHeight = imageHeight;
+            this.shift = shift;
+            this.scaledPixels = scaledPixels;
+            this.firstBlockRow = top >> shift;
+
+            if(!box) sums = null;
+            else {
+                sums = new long[(((bottom - 1) >> shift) - firstBlockRow + 1) * scaledPixels.width];
+
+                // The blocks the band before shares with this one already hold the sums of its pixels.
+                if(shared != null) System.arraycopy(shared, 0, sums, 0, shared.length);
+            }
+        }
+
+        @Override
+        void fill(int row, int col, int tileWidth, int tileHeight, int tileColor) {
+            if(sums == null) sample(row, col, tileWidth, tileHeight, tileColor);
+            else sum(row, col, tileWidth, tileHeight, tileColor);
+        }
+
+        // Paints the pixels of the smaller image whose blocks start within the tile. A tile that does not cover the
+        // top left pixel of any block paints nothing.
+        void sample(int row, int col, int tileWidth, int tileHeight, int tileColor) {
+            int firstCol = scaled(col, shift), endCol = scaled((long) col + tileWidth, shift);
+            if(firstCol == endCol) return;
+
+            for(int r = scaled(row, shift); r < scaled((long) row + tileHeight, shift); r++) {
+                int start = scaledPixels.index(r, firstCol);
+                Arrays.fill(scaledPixels.data, start, start + endCol - firstCol, tileColor);
+            }
+        }
+
+        // Adds the color of the tile to the sums of the blocks it covers, once for every pixel of the block it
+        // covers. Tiles can reach over pixels already painted by the tiles before them, with the same color, those
+        // pixels are only counted once, for the tile that painted them first.
+        void sum(int row, int col, int tileWidth, int tileHeight, int tileColor) {
+            long color = (long) (tileColor >> 16 & 0xFF) << 32 | (tileColor >> 8 & 0xFF) << 16 | (tileColor & 0xFF);
+            int end = row + tileHeight;
+
+            for(int c = col; c < col + tileWidth; c++) {
+                int index = c >> shift;
+
+                for(int r = top + coverage.unpaintedFrom(c); r < end; ) {
+                    int blockRow = r >> shift, next = (int) Math.min(end, (long) (blockRow + 1) << shift);
+                    sums[(blockRow - firstBlockRow) * scaledPixels.width + index] += color * (next - r);
+                    r = next;
+                }
+            }
+        }
+
+        // Turns the sums of the blocks of the band into their average colors. The blocks on the right and bottom
+        // edges can be cut by the edge of the image, they are averaged over the pixels within the image. Returns
+        // the sums of the last row of blocks if the next band shares it, or null.
+        long[] average() {
+            int factor = 1 << shift, blockRows = sums.length / scaledPixels.width;
+            boolean sharesLast = bottom < imageHeight && (bottom & (factor - 1)) != 0;
+
+            for(int i = 0; i < blockRows - (sharesLast ? 1 : 0); i++) {
+                int row = firstBlockRow + i;
+                int blockHeight = (int) Math.min(factor, imageHeight - ((long) row << shift));
+
+                for(int col = 0; col < scaledPixels.width; col++) {
+                    int area = (int) Math.min(factor, width - ((long) col << shift)) * blockHeight;
+                    long sum = sums[i * scaledPixels.width + col];
+
+                    int red = (int) ((sum >>> 32 & 0xFFFF) + area / 2) / area;
+                    int green = (int) ((sum >>> 16 & 0xFFFF) + area / 2) / area;
+                    int blue = (int) ((sum & 0xFFFF) + area / 2) / area;
+                    scaledPixels.data[scaledPixels.index(row, col)] = 0xFF000000 | red << 16 | green << 8 | blue;
+                }
+            }
+
+            return sharesLast ? Arrays.copyOfRange(sums, sums.length - scaledPixels.width, sums.length) : null;
+        }
+    }
+}
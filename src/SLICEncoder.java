@@ -0,0 +1,439 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compresses images into <strong>.slc</strong> files. Unlike the static methods of <strong>SLICCodec</strong>, an
+ * encoder keeps all its working state to itself, so any number of encoders can work at the same time on different
+ * threads. A single encoder must not be used by two threads at once.
+ *
+ * <p>
+ *  Files are written in version 2 by default, whose bands are compressed in parallel on the common
+ *  <strong>ForkJoinPool</strong>. Call <strong>setVersion(SLICCodec.VERSION_1)</strong> to write files that older
+ *  versions of SLIC Viewer can open.
+ * </p>
+ *
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code new SLICEncoder().encode(image, image.getWidth(), image.getHeight(), path);}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class SLICEncoder {
+
+    /**
+     * Effort levels, from the fastest to the one giving the smallest files.
+     * <p>
+     *  <strong>FAST</strong> takes the first of square, horizontal line and vertical line that is longer than 1, the
+     *  way SLIC Viewer always did. <strong>BALANCED</strong> takes the tile covering the most unpainted pixels.
+     *  <strong>THOROUGH</strong> compresses every band both ways and keeps the one with fewer tiles, taking about
+     *  twice as long. A version 1 file is a single band, so it is kept in memory until it is done.
+     * </p>
+     */
+    public static final int FAST = 0, BALANCED = 1, THOROUGH = 2;
+
+    // Fewer repeats of a tile than this are cheaper to write as the tile itself.
+    private static final int MIN_REPEATS = 2;
+
+    private int version = SLICCodec.VERSION_2;
+    private int bandHeight = SLICCodec.DEFAULT_BAND_HEIGHT;
+    private int effort = BALANCED;
+    private boolean entropyCoding, paletteDetection = true, extendedTiles = true;
+    private ProgressListener listener;
+
+    /**
+     * Chooses the format version of the files written from now on.
+     * @param version <strong>SLICCodec.VERSION_1</strong> or <strong>SLICCodec.VERSION_2</strong>
+     */
+    public void setVersion(int version) {
+        if(version != SLICCodec.VERSION_1 && version != SLICCodec.VERSION_2)
+            throw new IllegalArgumentException("Unknown SLIC version " + version);
+        this.version = version;
+    }
+
+    /**
+     * Chooses how many rows a band of a version 2 file holds. Smaller bands can be spread over more cores, bigger
+     * bands cut fewer tiles at their borders.
+     * @param bandHeight Rows per band, at least 1
+     */
+    public void setBandHeight(int bandHeight) {
+        if(bandHeight < 1) throw new IllegalArgumentException("A band must hold at least one row.");
+        this.bandHeight = bandHeight;
+    }
+
+    /**
+     * Chooses how hard the encoder tries to find the tiles that make the file smallest. The files can be opened the
+     * same way whatever the effort, only the time it takes to write them differs.
+     * @param effort <strong>FAST</strong>, <strong>BALANCED</strong> or <strong>THOROUGH</strong>
+     */
+    public void setEffort(int effort) {
+        if(effort < FAST || effort > THOROUGH) throw new IllegalArgumentException("Unknown effort level " + effort);
+        this.effort = effort;
+    }
+
+    /**
+     * Chooses whether the bands of version 2 files are entropy coded. Entropy coded files are a lot smaller, but can
+     * only be opened by SLIC Viewer 2.2 and later.
+     * @param entropyCoding true to entropy code the bands, false to store plain tiles
+     */
+    public void setEntropyCoding(boolean entropyCoding) {
+        this.entropyCoding = entropyCoding;
+    }
+
+    /**
+     * Chooses whether version 2 files of images with at most 256 colors store the index of the color of every tile
+     * in a palette, instead of the color itself. It is on by default, and costs a pass over the pixels.
+     * @param paletteDetection true to use a palette whenever the image allows it
+     */
+    public void setPaletteDetection(boolean paletteDetection) {
+        this.paletteDetection = paletteDetection;
+    }
+
+    /**
+     * Chooses whether version 2 files may hold lines and squares longer than 63 pixels, and repeat a tile with a
+     * single REPEAT tile. Big areas of a single color then take a few tiles instead of thousands. It is on by default.
+     * @param extendedTiles true to write extended tiles
+     */
+    public void setExtendedTiles(boolean extendedTiles) {
+        this.extendedTiles = extendedTiles;
+    }
+
+    /**
+     * Chooses the listener told about the progress of every image compressed from now on.
+     * @param listener The listener, or null to work silently
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Compresses the top left <strong>width x height</strong> area of the image into a SLIC image file.
+     * @param image The image we want to compress
+     * @param width Width of the area to be compressed
+     * @param height Height of the area to be compressed
+     * @param compressedFile The target path to which the compressed image is saved
+     * @throws IOException If the file cannot be written. The target is left untouched in this case.
+     * @throws java.util.concurrent.CancellationException If the listener cancels the compression. The target is left
+     *                                                    untouched in this case too.
+     */
+    public void encode(BufferedImage image, int width, int height, Path compressedFile) throws IOException {
+        // The pixels are read straight from the array backing the image.
+        ImagePixels pixels = ImagePixels.of(image, width, height);
+        encode((top, bottom) -> pixels, width, height, compressedFile);
+    }
+
+    /**
+     * Compresses an image kept in a scratch file into a version 2 SLIC image file. Only the bands in progress are
+     * read into memory, so the image can be far bigger than the heap.
+     * @param image The image we want to compress
+     * @param compressedFile The target path to which the compressed image is saved
+     * @throws IOException If the image cannot be read or the file cannot be written. The target is left untouched
+     *                     in this case.
+     * @throws IllegalStateException If the encoder is set to write version 1 files, which hold the whole image in
+     *                               a single band
+     * @throws java.util.concurrent.CancellationException If the listener cancels the compression. The target is left
+     *                                                    untouched in this case too.
+     */
+    public void encode(LargeImage image, Path compressedFile) throws IOException {
+        if(version == SLICCodec.VERSION_1)
+            throw new IllegalStateException("Only version 2 files can be written from a LargeImage.");
+        encode(image, image.getWidth(), image.getHeight(), compressedFile);
+    }
+
+    /**
+     * Compresses an image handed over a band of rows at a time into a SLIC image file, like the rows of a bitmap
+     * read by a <strong>BitmapReader</strong>. For a version 2 file only the bands in progress are asked for, so the
+     * image never has to be in memory as a whole. A version 1 file is a single band, all the rows are asked for at
+     * once.
+     * <pre>
+     *     <strong>Ex:</strong>
+     *     {@code try(BitmapReader bitmap = BitmapReader.open(path)) { encoder.encode(bitmap, bitmap.getWidth(), bitmap.getHeight(), target); }}
+     * </pre>
+     * @param rows The source of the rows
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param compressedFile The target path to which the compressed image is saved
+     * @throws IOException If the rows cannot be read or the file cannot be written. The target is left untouched
+     *                     in this case.
+     * @throws java.util.concurrent.CancellationException If the listener cancels the compression. The target is left
+     *                                                    untouched in this case too.
+     */
+    public void encode(RowSource rows, int width, int height, Path compressedFile) throws IOException {
+        if(version == SLICCodec.VERSION_1 && !SLICCodec.fitsVersion1(width, height))
+            throw new IOException(width + "x" + height + " is too big for a version 1 SLIC file.");
+        if(version == SLICCodec.VERSION_1 && entropyCoding)
+            throw new IllegalStateException("Only version 2 files can be entropy coded.");
+
+        CodecProgress progress = new CodecProgress(true, width, height, listener);
+        boolean completed = false;
+        progress.start();
+
+        // The file is kept open during the whole compression, tiles are collected in a large buffer and written
+        // in big chunks. Nothing shows up at compressedFile until the writer is committed.
+        try(SLICFileWriter writer = new SLICFileWriter(compressedFile)) {
+
+            if(version == SLICCodec.VERSION_1) {
+                ImagePixels pixels = rows.rows(0, height);
+
+                // Writing the METADATA of the file, which stores the dimensions of the image
+                writer.putInt((height << 16) | width);
+
+                if(effort == THOROUGH) encodeToBuffer(pixels, 0, height, effort, false, progress).writeTo(writer);
+                else encodeBand(pixels, 0, height, writer, effort, false, progress, true);
+            } else encodeBands(rows, width, height, writer, progress);
+
+            writer.commit();
+            completed = true;
+        } finally {
+            progress.finish(completed);
+        }
+    }
+
+    // Writes a version 2 file. Bands are compressed on the ForkJoinPool into their own buffers, and written in order
+    // as soon as they are done. Only a few bands ahead of the one being written are in progress, so the whole
+    // compressed image never has to sit in memory, and neither do the pixels if they come from a LargeImage.
+    private void encodeBands(RowSource rows, int width, int height, SLICFileWriter writer, CodecProgress progress)
+            throws IOException {
+        int bandCount = SLICCodec.bandCount(height, bandHeight);
+        Palette palette = paletteDetection ? Palette.of(rows, height, bandHeight) : null;
+
+        writer.putInt(SLICCodec.MAGIC);
+        int flags = (entropyCoding ? SLICCodec.FLAG_ENTROPY : 0) | (palette != null ? SLICCodec.FLAG_PALETTE : 0)
+                  | (extendedTiles ? SLICCodec.FLAG_EXTENDED : 0);
+        writer.putInt(SLICCodec.VERSION_2 << 24 | flags << 16);
+        writer.putInt(height);
+        writer.putInt(width);
+        writer.putInt(bandHeight);
+
+        if(palette != null) {
+            writer.putInt(palette.size());
+            for(int i = 0; i < palette.size(); i++) writer.putInt(palette.color(i));
+        }
+
+        // The offset table is filled in once the size of every band is known.
+        long tablePosition = writer.position();
+        ByteBuffer offsets = ByteBuffer.allocate((bandCount + 1) * 8);
+        writer.write(ByteBuffer.allocate(offsets.capacity()));
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int ahead = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<BandBuffer>> inProgress = new ArrayDeque<>();
+
+        try {
+            for(int band = 0, submitted = 0; band < bandCount; band++) {
+
+                // Keeping the pool busy with the next bands while this one is written
+                for(; submitted < bandCount && submitted < band + ahead; submitted++) {
+                    final int top = submitted * bandHeight, bottom = Math.min(height, top + bandHeight);
+                    inProgress.add(pool.submit(() -> {
+                        try {
+                            ImagePixels pixels = rows.rows(top, bottom);
+                            BandBuffer tiles = encodeToBuffer(pixels, top, bottom, effort, extendedTiles, progress);
+                            BandBuffer coded = entropyCoding ? EntropyCoder.encode(tiles, width, bottom - top, palette)
+                                             : palette != null ? palette.pack(tiles) : tiles;
+
+                            // The bytes of the tiles have been counted, the band takes this many more or fewer.
+                            progress.add(0, 0, coded.size() - tiles.size());
+                            return coded;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+
+                BandBuffer done = join(inProgress.poll());
+                offsets.putLong(writer.position());
+                done.writeTo(writer);
+            }
+        } finally {
+            for(ForkJoinTask<BandBuffer> task : inProgress) task.cancel(false);
+        }
+
+        offsets.putLong(writer.position());
+        offsets.flip();
+        writer.patch(tablePosition, offsets);
+    }
+
+    // Compresses the rows [top, bottom) into a buffer of their own. With THOROUGH the rows are compressed both the
+    // BALANCED and the FAST way, and the one with fewer tiles is kept. Only the first one counts as progress.
+    private static BandBuffer encodeToBuffer(ImagePixels pixels, int top, int bottom, int effort, boolean extended,
+                                             CodecProgress progress) throws IOException {
+        // Around a byte per pixel is a good first guess for the size of a band.
+        BandBuffer buffer = new BandBuffer(pixels.width * (bottom - top));
+        if(effort != THOROUGH) {
+            encodeBand(pixels, top, bottom, buffer, effort, extended, progress, true);
+            return buffer;
+        }
+
+        encodeBand(pixels, top, bottom, buffer, BALANCED, extended, progress, true);
+        BandBuffer fast = new BandBuffer(buffer.size());
+        // The second pass still stops once the image is cancelled.
+        encodeBand(pixels, top, bottom, fast, FAST, extended, progress, false);
+
+        if(fast.size() >= buffer.size()) return buffer;
+        if(progress != null) progress.add(0, 0, fast.size() - buffer.size());
+        return fast;
+    }
+
+    // Waits for a band and hands its IOException, if any, over to the caller.
+    private static BandBuffer join(ForkJoinTask<BandBuffer> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // The iteration loop for extracting the tiles out of the rows [top, bottom) of the image
+    /* AT EACH ITERATION:
+     * 1 - Go to the first unpainted spot, stop if there is none left
+     * 2 - Choose the mode and the length of the tile starting at the cursor, the way the effort level tells
+     * 3 - Assign the tile to the coverage map
+     * 4 - Hand the collected tile information bytes over to the output. With extended tiles, a tile just like the one
+     *     before it only adds to the count of the REPEAT written once a different tile comes
+     * 5 - Every SAMPLE_TILES tiles, add the progress of the band to the progress of the image, if there is one. A
+     *     pass that does not count as progress only checks whether the image is cancelled
+     */
+    static void encodeBand(ImagePixels pixels, int top, int bottom, TileOutput output, int effort, boolean extended,
+                           CodecProgress progress, boolean counted) throws IOException {
+        CoverageMap coverage = CoverageMap.obtain(pixels.width, bottom - top);
+
+        // Extended tiles can be as long as the band allows.
+        RunTables tables = RunTables.obtain(pixels, top, bottom, extended ? Integer.MAX_VALUE : SLICCodec.MAX_LENGTH);
+
+        // Tiles written, and pixels passed by the cursor and bytes written since the progress was last added to the
+        // image's.
+        int sampled = 0;
+        long covered = 0, reported = output.position();
+
+        // The tile before, and how many times it has been repeated since it was written.
+        int previousColor = -1, previousTile = 0, repeats = 0;
+
+        try {
+            while(coverage.nextUnpaintedSpot()) { // step 1
+                int row = top + coverage.row(), col = coverage.col();
+                int color = pixels.data[pixels.index(row, col)] & SLICCodec.RGB_MASK;
+                tables.moveTo(row);
+
+                // step 2, the tile comes back as its length followed by the two mode bits
+                int tile = effort == FAST ? greedyTile(tables, row, col)
+                                          : widestTile(tables, coverage, row, col, extended);
+                int mode = tile & 0x3, length = tile >>> 2;
+
+                // step 3
+                coverage.paint(SLICCodec.tileWidth(mode, length), SLICCodec.tileHeight(mode, length));
+
+                // step 4, RRRRRRRR GGGGGGGG BBBBBBBB MMSSSSSS
+                if(!extended) output.putInt(color << 8 | mode << 6 | length);
+                else if(color == previousColor && tile == previousTile) repeats++;
+                else {
+                    putRepeats(output, previousColor, previousTile, repeats);
+                    putTile(output, color, mode, length);
+                    previousColor = color;
+                    previousTile = tile;
+                    repeats = 0;
+                }
+
+                // step 5
+                if(++sampled == CodecProgress.SAMPLE_TILES && progress != null) {
+                    if(!counted) progress.checkCancelled();
+                    else {
+                        long cursor = (long) coverage.row() * pixels.width + coverage.col();
+                        long written = output.position();
+                        progress.add(cursor - covered, sampled, written - reported);
+                        covered = cursor;
+                        reported = written;
+                    }
+                    sampled = 0;
+                }
+            }
+
+            putRepeats(output, previousColor, previousTile, repeats);
+            if(progress != null && counted)
+                progress.add((long) (bottom - top) * pixels.width - covered, sampled, output.position() - reported);
+        } finally {
+            coverage.release();
+            tables.release();
+        }
+    }
+
+    // Writes an extended tile, with its length after it if the size bits cannot hold it.
+    private static void putTile(TileOutput output, int color, int mode, int length) throws IOException {
+        if(length <= SLICCodec.MAX_LENGTH) output.putInt(color << 8 | mode << 6 | length);
+        else {
+            output.putInt(color << 8 | mode << 6);
+            output.putVarint(length);
+        }
+    }
+
+    // Writes the repeats of the tile before, as a REPEAT if there are enough of them to pay for its varint.
+    private static void putRepeats(TileOutput output, int color, int tile, int repeats) throws IOException {
+        if(repeats >= MIN_REPEATS) {
+            output.putInt(SLICCodec.DOT << 6 | SLICCodec.REPEAT);
+            output.putVarint(repeats);
+        } else for(int i = 0; i < repeats; i++) putTile(output, color, tile & 0x3, tile >>> 2);
+    }
+
+    /* FAST
+     * 1 - Look up the biggest homogeneous square (mode 3) starting at the spot
+     * 2 - If length is more than 1, take it
+     * 3 - Look up the longest homogeneous horizontal line (mode 1) starting at the spot
+     * 4 - If length is more than 1, take it
+     * 5 - Look up the longest homogeneous vertical line (mode 2) starting at the spot
+     * 6 - If length is still not more than 1, take a dot (mode 0) with length 0
+     */
+    private static int greedyTile(RunTables tables, int row, int col) {
+        int length = length(tables, SLICCodec.SQUARE, row, col);
+        if(length > 1) return length << 2 | SLICCodec.SQUARE;
+
+        length = length(tables, SLICCodec.HORIZONTAL_LINE, row, col);
+        if(length > 1) return length << 2 | SLICCodec.HORIZONTAL_LINE;
+
+        length = length(tables, SLICCodec.VERTICAL_LINE, row, col);
+        if(length > 1) return length << 2 | SLICCodec.VERTICAL_LINE;
+
+        return SLICCodec.DOT;
+    }
+
+    // BALANCED, the tile covering the most unpainted pixels at the spot. On a tie, the first of square, horizontal
+    // line and vertical line wins, like in FAST. An extended square is scored at its full size, as it is written.
+    private static int widestTile(RunTables tables, CoverageMap coverage, int row, int col, boolean extended) {
+        int best = SLICCodec.DOT, bestPixels = 1;
+
+        for(int mode = SLICCodec.SQUARE; mode > SLICCodec.DOT; mode--) {
+            int length = length(tables, mode, row, col);
+            if(length < 2) continue;
+
+            int size = extended ? length : Math.min(length, SLICCodec.MAX_LENGTH);
+            int pixels = coverage.unpaintedPixels(col, SLICCodec.tileWidth(mode, size), SLICCodec.tileHeight(mode, size));
+            if(pixels > bestPixels) {
+                best = length << 2 | mode;
+                bestPixels = pixels;
+            }
+        }
+        return best;
+    }
+
+    // Length of the homogeneous line or square of the given mode starting at the spot. Only squares get longer than
+    // MAX_LENGTH with extended tiles. A long line is written as the longest short line and a REPEAT of it, which takes
+    // just as few bytes and leaves better spots for the tiles after it.
+    private static int length(RunTables tables, int mode, int row, int col) {
+        switch(mode) {
+            case SLICCodec.SQUARE: return tables.square(row, col);
+            case SLICCodec.HORIZONTAL_LINE: return Math.min(tables.horizontal(row, col), SLICCodec.MAX_LENGTH);
+            case SLICCodec.VERTICAL_LINE: return Math.min(tables.vertical(row, col), SLICCodec.MAX_LENGTH);
+            default: return 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The input stage of the SLIC decoder. Instead of reading the whole file into memory before decompressing anything,
+ * it hands out the parts of the file the decoder asks for, one band at a time.
+ *
+ * <p>
+ *  Big parts are memory-mapped, so the decoder can start painting the first tiles while the operating system is
+ *  still bringing the rest of the band in, and pages that have been decoded can be dropped again. Small parts are
+ *  simply read, mapping them would cost more than it saves.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class SLICFileReader implements AutoCloseable {
+
+    // Parts smaller than this are read instead of mapped.
+    static final int MAP_THRESHOLD = 1 << 16;
+
+    // The largest part that can be asked for at once. A version 1 file bigger than this is decoded chunk by chunk.
+    static final int MAX_PART = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * Opens the file for reading.
+     * @param compressedFile The path of the .slc file
+     * @throws IOException If the file cannot be opened
+     */
+    public SLICFileReader(Path compressedFile) throws IOException {
+        channel = FileChannel.open(compressedFile, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    /** @return The size of the file in bytes */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes [from, to) of the file. The returned buffer stays valid after the reader is closed.
+     * @param from Offset of the first byte
+     * @param to Offset after the last byte, at most <strong>MAX_PART</strong> bytes after <strong>from</strong>
+     * @return A big-endian buffer holding the bytes, positioned at 0
+     * @throws IOException If the part cannot be read, or reaches beyond the end of the file
+     */
+    public ByteBuffer read(long from, long to) throws IOException {
+        if(from < 0 || to < from || to - from > MAX_PART)
+            throw new IllegalArgumentException("Cannot read the part [" + from + ", " + to + ")");
+        if(to > size) throw new EOFException("The file ends before " + to + ", it is cut off.");
+
+        int length = (int) (to - from);
+        if(length >= MAP_THRESHOLD) return channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining())
+            if(channel.read(buffer, from + buffer.position()) < 0)
+                throw new EOFException("The file ends before " + to + ", it is cut off.");
+
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,301 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The output stage of the SLIC encoder. Instead of opening, appending and closing the target file for every single
+ * tile, it keeps one <strong>FileChannel</strong> open for the whole compression and collects the tiles in a large
+ * <strong>ByteBuffer</strong>.
+ *
+ * <p>
+ *  There are two buffers. While the encoder fills one of them, the other one is being written to the disk on a
+ *  background thread, so the disk and the encoder work at the same time.
+ * </p>
+ * <p>
+ *  Everything is written to a temporary file next to the target first. Only <strong>commit()</strong> moves it onto
+ *  the target path, so a failed compression never leaves a half-written <strong>.slc</strong> file behind.
+ * </p>
+ * <pre>
+ *     <strong>Ex:</strong>
+ *     {@code try(SLICFileWriter writer = new SLICFileWriter(path)){
+ *         writer.putInt(tile);
+ *         writer.commit();
+ *     }}
+ * </pre>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public class SLICFileWriter implements TileOutput, AutoCloseable {
+
+    // 1 MB per buffer, big enough that the disk only sees a handful of large writes per image.
+    static final int BUFFER_SIZE = 1 << 20;
+
+    // The buffers are kept after a save and handed to the next writer instead of being allocated again.
+    private static final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    // Background threads doing the actual disk writes. They are daemons so that they never keep the app alive.
+    private static final ExecutorService flushExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "SLIC file writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path target, temp;
+    private final FileChannel channel;
+
+    // front : the buffer the encoder is filling at the moment.
+    // back  : the buffer that is (or was lastly) being written to the disk.
+    private ByteBuffer front, back;
+    private Future<?> pendingFlush;
+    private final List<Patch> patches = new ArrayList<>();
+    private long position;
+    private boolean committed, closed;
+
+    /**
+     * Creates a writer whose output will end up in the given path once <strong>commit()</strong> is called.
+     * @param target The path of the .slc file to be written
+     * @throws IOException If the temporary file next to the target cannot be created
+     */
+    public SLICFileWriter(Path target) throws IOException {
+        this.target = target;
+
+        temp = createTemp(target);
+        channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        front = obtainBuffer();
+        back = obtainBuffer();
+    }
+
+    /**
+     * Appends a 32-bit big-endian word to the file. This is exactly one tile, or the metadata of a legacy file.
+     * @param word The four bytes to be written, most significant byte first
+     * @throws IOException If an earlier background write has failed
+     */
+    @Override
+    public void putInt(int word) throws IOException {
+        if(front.remaining() < 4) swapBuffers();
+        front.putInt(word);
+        position += 4;
+    }
+
+    /**
+     * Appends a single byte to the file.
+     * @param value The byte, in the lowest 8 bits
+     * @throws IOException If an earlier background write has failed
+     */
+    @Override
+    public void putByte(int value) throws IOException {
+        if(!front.hasRemaining()) swapBuffers();
+        front.put((byte) value);
+        position++;
+    }
+
+    /**
+     * Appends a non-negative number as a varint, straight into the buffer being filled.
+     * @param value The number
+     * @throws IOException If an earlier background write has failed
+     */
+    @Override
+    public void putVarint(int value) throws IOException {
+        if(front.remaining() < SLICCodec.MAX_VARINT_SIZE) swapBuffers();
+        position += SLICCodec.writeVarint(value, front);
+    }
+
+    /**
+     * Appends all remaining bytes of the given buffer to the file.
+     * @param source The bytes to be written
+     * @throws IOException If an earlier background write has failed
+     */
+    public void write(ByteBuffer source) throws IOException {
+        position += source.remaining();
+
+        while(source.hasRemaining()) {
+            if(!front.hasRemaining()) swapBuffers();
+
+            int count = Math.min(front.remaining(), source.remaining());
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + count);
+            front.put(slice);
+            source.position(source.position() + count);
+        }
+    }
+
+    /**
+     * Returns how many bytes have been handed over to the writer so far, which is also the offset in the file
+     * where the next byte will be written.
+     * @return The current logical position in the file
+     */
+    @Override
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Overwrites bytes that have already been handed over to the writer, for example a table in the header that
+     * can only be filled in once everything after it is written. The patch is applied when the file is committed.
+     * @param filePosition The offset in the file where the bytes go
+     * @param bytes The new bytes, they must not reach beyond what has been written so far
+     */
+    public void patch(long filePosition, ByteBuffer bytes) {
+        if(filePosition < 0 || filePosition + bytes.remaining() > position)
+            throw new IllegalArgumentException("Cannot patch bytes that have not been written yet.");
+
+        patches.add(new Patch(filePosition, bytes.duplicate()));
+    }
+
+    /**
+     * Writes the remaining bytes, makes sure they have reached the disk and moves the temporary file onto the target.
+     * After this method returns, the target contains the complete file.
+     * @throws IOException If writing or renaming fails. The target is left untouched in this case.
+     */
+    public void commit() throws IOException {
+        swapBuffers();
+        awaitFlush();
+
+        for(Patch patch : patches)
+            for(long at = patch.position; patch.bytes.hasRemaining(); ) at += channel.write(patch.bytes, at);
+
+        channel.force(false);
+        channel.close();
+        moveOnto(temp, target);
+
+        committed = true;
+        close();
+    }
+
+    // Creates an empty temporary file next to the target. It has to be on the same file system as the target so that
+    // it can be renamed atomically. Unlike Files.createTempFile(), it gets the permissions any new file would get,
+    // as it will become the target.
+    static Path createTemp(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+
+        while(true) {
+            Path temp = directory.resolve("." + target.getFileName() + "." +
+                    Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Another file took the name first, another one is picked.
+            }
+        }
+    }
+
+    // Moves a finished temporary file onto its target, atomically where the file system allows it. A target that is
+    // replaced keeps its permissions.
+    static void moveOnto(Path temp, Path target) throws IOException {
+        PosixFileAttributeView attributes = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if(attributes != null && Files.exists(target))
+            Files.setPosixFilePermissions(temp, attributes.readAttributes().permissions());
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Releases the buffers. If the file has not been committed, the temporary file is deleted and the target is
+     * left untouched.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+
+        try {
+            awaitFlushQuietly();
+            channel.close();
+            if(!committed) Files.deleteIfExists(temp);
+        } finally {
+            // A buffer that may still be in use by an interrupted write is left to the garbage collector.
+            if(pendingFlush == null) {
+                releaseBuffer(front);
+                releaseBuffer(back);
+            }
+        }
+    }
+
+    // Waits for the back buffer to be written, then sends the front buffer to the disk and swaps them.
+    private void swapBuffers() throws IOException {
+        awaitFlush();
+
+        ByteBuffer full = front;
+        front = back;
+        back = full;
+        front.clear();
+
+        full.flip();
+        pendingFlush = flushExecutor.submit(() -> {
+            while(full.hasRemaining()) channel.write(full);
+            return null;
+        });
+    }
+
+    // Blocks until the last background write is done and rethrows its failure, if any.
+    private void awaitFlush() throws IOException {
+        if(pendingFlush == null) return;
+
+        try {
+            pendingFlush.get();
+            pendingFlush = null;
+        } catch (InterruptedException e) {
+            // The write is still running, so pendingFlush is kept and its buffer is not handed to anyone else.
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + target, e);
+        } catch (ExecutionException e) {
+            pendingFlush = null;
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private void awaitFlushQuietly() {
+        try {
+            awaitFlush();
+        } catch (IOException ignored) {
+            // The file is being discarded anyway.
+        }
+    }
+
+    // Bytes waiting to overwrite a part of the file at commit.
+    private static class Patch {
+        final long position;
+        final ByteBuffer bytes;
+
+        Patch(long position, ByteBuffer bytes) {
+            this.position = position;
+            this.bytes = bytes;
+        }
+    }
+
+    private static ByteBuffer obtainBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if(buffer == null) buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if(buffer != null) bufferPool.offer(buffer);
+    }
+}
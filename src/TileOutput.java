@@ -0,0 +1,42 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.io.IOException;
+
+/**
+ * Anything the encoder can write the tiles of an image, or of a band of an image, into. This is either the
+ * <strong>.slc</strong> file itself, or a <strong>BandBuffer</strong> in memory while bands are compressed in
+ * parallel.
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+public interface TileOutput {
+
+    /**
+     * Appends a 32-bit big-endian word, for example one tile, to the output.
+     * @param word The four bytes to be written, most significant byte first
+     * @throws IOException If the output cannot be written
+     */
+    void putInt(int word) throws IOException;
+
+    /**
+     * Appends a single byte to the output.
+     * @param value The byte, in the lowest 8 bits
+     * @throws IOException If the output cannot be written
+     */
+    void putByte(int value) throws IOException;
+
+    /** @return How many bytes have been written into the output so far */
+    long position();
+
+    /**
+     * Appends a non-negative number in as few bytes as it needs, 7 bits a byte, lowest bits first. Every byte but the
+     * last has its first bit set.
+     * @param value The number
+     * @throws IOException If the output cannot be written
+     */
+    default void putVarint(int value) throws IOException {
+        byte[] bytes = new byte[SLICCodec.MAX_VARINT_SIZE];
+        int size = SLICCodec.writeVarint(value, bytes, 0);
+        for(int i = 0; i < size; i++) putByte(bytes[i]);
+    }
+}
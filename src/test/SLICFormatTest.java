@@ -0,0 +1,363 @@
+// Written by İ.K. Bilir (Abes400)
+
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trip tests of the SLIC file format. Images are compressed into version 1 and version 2 files with every
+ * combination of the version 2 flags, decompressed again and compared pixel by pixel with the originals. Broken
+ * files, and files written by a newer version of the format, have to be refused with an <strong>IOException</strong>.
+ *
+ * <p>
+ *  The images are generated, so the tests need no files of their own. A <strong>drawing</strong> has a few dozen
+ *  colors and large areas of a single color, so it gets a palette and extended tiles. A <strong>photo</strong> has a
+ *  different color almost everywhere, so it never gets a palette.
+ * </p>
+ * @author İ.K. Bilir (Abes400)
+ * @since 2.2
+ */
+class SLICFormatTest {
+
+    // Offsets of the version and the flags in a version 2 header.
+    private static final int VERSION_OFFSET = 4, FLAGS_OFFSET = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void version1FilesRoundTrip() throws IOException {
+        for(BufferedImage image : new BufferedImage[] { drawing(300, 200), photo(97, 61) }) {
+            Path file = encode(image, version1());
+
+            // 0HHHHHHH HHHHHHHH 0WWWWWWW WWWWWWWW, then the tiles.
+            byte[] bytes = Files.readAllBytes(file);
+            assertEquals(image.getHeight(), (bytes[0] & 0xFF) << 8 | bytes[1] & 0xFF);
+            assertEquals(image.getWidth(), (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF);
+
+            SLICDecoder decoder = new SLICDecoder();
+            assertSamePixels(image, decoder.decode(file));
+            assertEquals(SLICCodec.VERSION_1, decoder.getVersion());
+            assertEquals(image.getHeight(), decoder.getBandHeight());
+        }
+    }
+
+    @Test
+    void version1AndVersion2FilesHoldTheSameImage() throws IOException {
+        BufferedImage image = drawing(400, 300);
+        Path first = encode(image, version1()), second = encode(image, new SLICEncoder());
+
+        // The same decoder reads both kinds of files one after the other, nothing of the first file may stick.
+        SLICDecoder decoder = new SLICDecoder();
+        BufferedImage fromVersion2 = decoder.decode(second);
+        assertEquals(SLICCodec.VERSION_2, decoder.getVersion());
+        BufferedImage fromVersion1 = decoder.decode(first);
+        assertEquals(SLICCodec.VERSION_1, decoder.getVersion());
+        BufferedImage fromVersion2Again = decoder.decode(second);
+
+        assertSamePixels(image, fromVersion1);
+        assertSamePixels(image, fromVersion2);
+        assertSamePixels(fromVersion1, fromVersion2Again);
+    }
+
+    @Test
+    void version1FilesIgnoreTheVersion2Options() throws IOException {
+        BufferedImage image = drawing(200, 150);
+
+        SLICEncoder plain = version1();
+        plain.setPaletteDetection(false);
+        plain.setExtendedTiles(false);
+        SLICEncoder rich = version1();
+        rich.setBandHeight(7);
+
+        assertArrayEquals(Files.readAllBytes(encode(image, plain)), Files.readAllBytes(encode(image, rich)));
+    }
+
+    @Test
+    void version1FilesRefuseWhatTheyCannotHold() {
+        SLICEncoder tooWide = version1();
+        assertThrows(IOException.class, () -> tooWide.encode(drawing(Short.MAX_VALUE + 1, 1), Short.MAX_VALUE + 1, 1,
+                directory.resolve("wide.slc")));
+
+        SLICEncoder entropyCoded = version1();
+        entropyCoded.setEntropyCoding(true);
+        assertThrows(IllegalStateException.class, () -> encode(drawing(10, 10), entropyCoded));
+    }
+
+    // Every combination of ENTROPY (1), PALETTE (2) and EXTENDED (4).
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 2, 3, 4, 5, 6, 7 })
+    void everyFlagCombinationRoundTrips(int flags) throws IOException {
+        BufferedImage image = drawing(333, 257);
+        Path file = encode(image, version2(flags, SLICCodec.DEFAULT_BAND_HEIGHT));
+
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(SLICCodec.VERSION_2, bytes[VERSION_OFFSET]);
+        assertEquals(flags, bytes[FLAGS_OFFSET]);
+
+        SLICDecoder decoder = new SLICDecoder();
+        assertSamePixels(image, decoder.decode(file));
+        assertEquals(SLICCodec.VERSION_2, decoder.getVersion());
+    }
+
+    // A photo has too many colors for a palette, the PALETTE flag is left out even when asked for.
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 6, 7 })
+    void photosNeverGetAPalette(int flags) throws IOException {
+        BufferedImage image = photo(211, 150);
+        Path file = encode(image, version2(flags, SLICCodec.DEFAULT_BAND_HEIGHT));
+
+        assertEquals(flags & ~SLICCodec.FLAG_PALETTE, Files.readAllBytes(file)[FLAGS_OFFSET]);
+        assertSamePixels(image, new SLICDecoder().decode(file));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 2, 3, 4, 5, 6, 7 })
+    void singleRowImagesRoundTrip(int flags) throws IOException {
+        for(int bandHeight : new int[] { 1, 2, SLICCodec.DEFAULT_BAND_HEIGHT }) {
+            BufferedImage image = drawing(1000, 1);
+            Path file = encode(image, version2(flags, bandHeight));
+
+            SLICDecoder decoder = new SLICDecoder();
+            assertSamePixels(image, decoder.decode(file));
+            assertEquals(bandHeight, decoder.getBandHeight());
+        }
+
+        assertSamePixels(drawing(1000, 1), new SLICDecoder().decode(encode(drawing(1000, 1), version1())));
+    }
+
+    // Bands of a single row, bands of an odd height whose last band is cut short, and a band taller than the image.
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 3, 7, 63, 65, 127, 1000 })
+    void oddBandHeightsRoundTrip(int bandHeight) throws IOException {
+        for(int flags = 0; flags <= SLICCodec.KNOWN_FLAGS; flags++) {
+            BufferedImage image = flags % 2 == 0 ? drawing(150, 131) : photo(150, 131);
+            Path file = encode(image, version2(flags, bandHeight));
+
+            assertSamePixels(image, new SLICDecoder().decode(file));
+
+            // A region reaching over the border of two bands is read from those bands only.
+            int top = Math.min(bandHeight - 1, 100);
+            BufferedImage region = new SLICDecoder().decodeRegion(file, 10, top, 90, 31);
+            assertSamePixels(image.getSubimage(10, top, 90, 31), region);
+        }
+    }
+
+    @Test
+    void everyEffortWritesTheSameImage() throws IOException {
+        BufferedImage image = drawing(260, 190);
+
+        for(int effort = SLICEncoder.FAST; effort <= SLICEncoder.THOROUGH; effort++) {
+            SLICEncoder version1 = version1(), version2 = version2(SLICCodec.KNOWN_FLAGS, 17);
+            version1.setEffort(effort);
+            version2.setEffort(effort);
+
+            assertSamePixels(image, new SLICDecoder().decode(encode(image, version1)));
+            assertSamePixels(image, new SLICDecoder().decode(encode(image, version2)));
+        }
+    }
+
+    @Test
+    void unknownFlagsAreRefused() throws IOException {
+        Path file = encode(drawing(64, 64), new SLICEncoder());
+
+        for(int flag = SLICCodec.KNOWN_FLAGS + 1; flag <= 0xFF; flag <<= 1) {
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[FLAGS_OFFSET] |= (byte) flag;
+            Path newer = Files.write(directory.resolve("flag" + flag + ".slc"), bytes);
+
+            IOException refusal = assertThrows(IOException.class, () -> new SLICDecoder().decode(newer));
+            assertTrue(refusal.getMessage().contains("newer version"), refusal.getMessage());
+            assertThrows(IOException.class, () -> new SLICDecoder().readHeader(newer));
+        }
+    }
+
+    @Test
+    void unknownVersionsAreRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(encode(drawing(64, 64), new SLICEncoder()));
+        bytes[VERSION_OFFSET] = 3;
+        Path newer = Files.write(directory.resolve("version3.slc"), bytes);
+
+        IOException refusal = assertThrows(IOException.class, () -> new SLICDecoder().decode(newer));
+        assertTrue(refusal.getMessage().contains("newer version"), refusal.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 2 })
+    void truncatedBandTablesAreRefused(int flags) throws IOException {
+        byte[] bytes = Files.readAllBytes(encode(drawing(120, 100), version2(flags, 10)));
+        int tableStart = tableStart(bytes), tableEnd = tableStart + (10 + 1) * 8;
+
+        // Cut within the table, and right after it, before any band.
+        for(int length : new int[] { tableStart, tableStart + 5, tableStart + 8, tableEnd - 1, tableEnd }) {
+            Path cut = Files.write(directory.resolve("cut" + length + ".slc"), Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> new SLICDecoder().decode(cut), "cut at " + length);
+            assertThrows(IOException.class, () -> new SLICDecoder().readHeader(cut), "cut at " + length);
+        }
+    }
+
+    @Test
+    void truncatedHeadersAndPalettesAreRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(encode(drawing(120, 100), version2(SLICCodec.FLAG_PALETTE, 10)));
+        assertEquals(SLICCodec.FLAG_PALETTE, bytes[FLAGS_OFFSET]);
+
+        for(int length = 0; length < tableStart(bytes); length++) {
+            Path cut = Files.write(directory.resolve("head" + length + ".slc"), Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> new SLICDecoder().decode(cut), "cut at " + length);
+        }
+    }
+
+    @Test
+    void bandsOutOfPlaceAreRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(encode(drawing(120, 100), version2(0, 10)));
+
+        // The file ends within its last band, so the end of the band lies beyond the end of the file.
+        Path cut = Files.write(directory.resolve("cut.slc"), Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> new SLICDecoder().decode(cut));
+
+        // A band starting before the one above it.
+        byte[] swapped = bytes.clone();
+        int second = SLICCodec.V2_HEADER_SIZE + 8;
+        for(int i = 0; i < 8; i++) swapped[second + 8 + i] = bytes[second + i];
+        for(int i = 0; i < 8; i++) swapped[second + i] = bytes[second + 8 + i];
+        Path broken = Files.write(directory.resolve("swapped.slc"), swapped);
+        assertThrows(IOException.class, () -> new SLICDecoder().decode(broken));
+    }
+
+    @Test
+    void filesThatAreNotSLICAreRefused() throws IOException {
+        Path empty = Files.write(directory.resolve("empty.slc"), new byte[0]);
+        assertThrows(IOException.class, () -> new SLICDecoder().decode(empty));
+
+        Path other = Files.write(directory.resolve("other.slc"), new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0 });
+        assertThrows(IOException.class, () -> new SLICDecoder().decode(other));
+    }
+
+    @Test
+    void varintsAreWrittenStraightIntoTheFile() throws IOException {
+        // Enough of them to fill the buffers of the writer a few times, so that some meet the end of a buffer.
+        int[] values = new int[SLICFileWriter.BUFFER_SIZE];
+        Random random = new Random(7);
+        for(int i = 0; i < values.length; i++) values[i] = random.nextInt() >>> random.nextInt(32);
+        values[0] = 0;
+        values[1] = Integer.MAX_VALUE;
+
+        byte[] expected = new byte[values.length * (SLICCodec.MAX_VARINT_SIZE + 1)];
+        int size = 0;
+        Path file = directory.resolve("varints.bin");
+        try(SLICFileWriter writer = new SLICFileWriter(file)) {
+            for(int value : values) {
+                writer.putVarint(value);
+                size += SLICCodec.writeVarint(value, expected, size);
+
+                // A single byte in between, so that the varints do not always start at the same place in a buffer.
+                if(value % 3 == 0) {
+                    writer.putByte(0x55);
+                    expected[size++] = 0x55;
+                }
+            }
+            assertEquals(size, writer.position());
+            writer.commit();
+        }
+
+        assertArrayEquals(Arrays.copyOf(expected, size), Files.readAllBytes(file));
+    }
+
+    // Compresses the image into a new file in the temporary directory.
+    private Path encode(BufferedImage image, SLICEncoder encoder) throws IOException {
+        Path file = Files.createTempFile(directory, "image", ".slc");
+        encoder.encode(image, image.getWidth(), image.getHeight(), file);
+        return file;
+    }
+
+    private static SLICEncoder version1() {
+        SLICEncoder encoder = new SLICEncoder();
+        encoder.setVersion(SLICCodec.VERSION_1);
+        return encoder;
+    }
+
+    private static SLICEncoder version2(int flags, int bandHeight) {
+        SLICEncoder encoder = new SLICEncoder();
+        encoder.setVersion(SLICCodec.VERSION_2);
+        encoder.setBandHeight(bandHeight);
+        encoder.setEntropyCoding((flags & SLICCodec.FLAG_ENTROPY) != 0);
+        encoder.setPaletteDetection((flags & SLICCodec.FLAG_PALETTE) != 0);
+        encoder.setExtendedTiles((flags & SLICCodec.FLAG_EXTENDED) != 0);
+        return encoder;
+    }
+
+    // Where the band table of a version 2 file starts, after the palette if there is one.
+    private static int tableStart(byte[] bytes) {
+        if((bytes[FLAGS_OFFSET] & SLICCodec.FLAG_PALETTE) == 0) return SLICCodec.V2_HEADER_SIZE;
+
+        int size = 0;
+        for(int i = 0; i < 4; i++) size = size << 8 | bytes[SLICCodec.V2_HEADER_SIZE + i] & 0xFF;
+        return SLICCodec.V2_HEADER_SIZE + 4 + size * 4;
+    }
+
+    // Only the RGB part of the pixels is stored in SLIC files.
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth(), "width");
+        assertEquals(expected.getHeight(), actual.getHeight(), "height");
+
+        for(int row = 0; row < expected.getHeight(); row++)
+            for(int col = 0; col < expected.getWidth(); col++)
+                if(((expected.getRGB(col, row) ^ actual.getRGB(col, row)) & SLICCodec.RGB_MASK) != 0)
+                    throw new AssertionError("The pixels at " + col + "," + row + " differ: "
+                            + Integer.toHexString(expected.getRGB(col, row)) + " was expected, "
+                            + Integer.toHexString(actual.getRGB(col, row)) + " was read");
+    }
+
+    // Rectangles, lines and scattered dots in 40 colors on a plain background.
+    private static BufferedImage drawing(int width, int height) {
+        Random random = new Random(width * 31L + height);
+        int[] colors = new int[40];
+        for(int i = 0; i < colors.length; i++) colors[i] = random.nextInt() & SLICCodec.RGB_MASK;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        fill(image, 0, 0, width, height, colors[0]);
+
+        for(int i = 0; i < 30; i++) {
+            int x = random.nextInt(width), y = random.nextInt(height);
+            int w = 1 + random.nextInt(Math.max(1, width - x)), h = 1 + random.nextInt(Math.max(1, height - y));
+            fill(image, x, y, w, h, colors[random.nextInt(colors.length)]);
+        }
+        for(int i = 0; i < width * height / 50; i++)
+            image.setRGB(random.nextInt(width), random.nextInt(height), colors[random.nextInt(colors.length)]);
+        return image;
+    }
+
+    // A gradient with noise on it.
+    private static BufferedImage photo(int width, int height) {
+        Random random = new Random(width * 17L + height);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        for(int row = 0; row < height; row++)
+            for(int col = 0; col < width; col++) {
+                int red = (col * 255 / width + random.nextInt(16)) & 0xFF;
+                int green = (row * 255 / height + random.nextInt(16)) & 0xFF;
+                image.setRGB(col, row, red << 16 | green << 8 | random.nextInt(256));
+            }
+        return image;
+    }
+
+    private static void fill(BufferedImage image, int x, int y, int width, int height, int color) {
+        for(int row = y; row < y + height; row++)
+            for(int col = x; col < x + width; col++) image.setRGB(col, row, color);
+    }
+}